@@ -0,0 +1,103 @@
+package org.example.dlm.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProgressPersistenceBenchmark {
+
+    private static final String UPDATE_SEGMENT_SQL =
+            "update segments set received_bytes = ? where id = ?";
+
+    @Param({"4", "32", "256"})
+    private int dirtySegments;
+
+    @Param({"mem", "file"})
+    private String storage;
+
+    private Connection connection;
+    private long tick;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = "mem".equals(storage)
+                ? "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"
+                : "jdbc:h2:" + System.getProperty("java.io.tmpdir") + "/dlm-bench-" + UUID.randomUUID();
+        connection = DriverManager.getConnection(url, "sa", "");
+        try (Statement st = connection.createStatement()) {
+            st.execute("create table segments (id bigint primary key, download_id uuid, received_bytes bigint not null)");
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into segments (id, download_id, received_bytes) values (?, ?, 0)")) {
+            UUID download = UUID.randomUUID();
+            for (int i = 1; i <= dirtySegments; i++) {
+                ps.setLong(1, i);
+                ps.setObject(2, download);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("drop all objects delete files");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int singleUpdatePerSegment() throws SQLException {
+        tick++;
+        int updated = 0;
+        for (int i = 1; i <= dirtySegments; i++) {
+            try (PreparedStatement ps = connection.prepareStatement(UPDATE_SEGMENT_SQL)) {
+                ps.setLong(1, tick * 65536);
+                ps.setLong(2, i);
+                updated += ps.executeUpdate();
+            }
+            connection.commit();
+        }
+        return updated;
+    }
+
+    @Benchmark
+    public int batchedUpdate() throws SQLException {
+        tick++;
+        try (PreparedStatement ps = connection.prepareStatement(UPDATE_SEGMENT_SQL)) {
+            for (int i = 1; i <= dirtySegments; i++) {
+                ps.setLong(1, tick * 65536);
+                ps.setLong(2, i);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            connection.commit();
+            return counts.length;
+        }
+    }
+}
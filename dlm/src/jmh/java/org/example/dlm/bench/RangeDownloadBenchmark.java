@@ -0,0 +1,115 @@
+package org.example.dlm.bench;
+
+import org.example.dlm.service.HttpRangeClient;
+import org.example.dlm.service.io.ByteBufferBodyStream;
+import org.example.dlm.service.io.FileChannelRegistry;
+import org.example.dlm.service.io.SegmentWriter;
+import org.example.dlm.support.LoopbackRangeServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RangeDownloadBenchmark {
+
+    private static final long FILE_SIZE = 128L * 1024 * 1024;
+
+    @Param({"1", "4", "8"})
+    private int segments;
+
+    @Param({"0", "20"})
+    private long latencyMs;
+
+    private LoopbackRangeServer server;
+    private HttpRangeClient http;
+    private FileChannelRegistry registry;
+    private ExecutorService executor;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LoopbackRangeServer().latency(latencyMs).start();
+        http = new HttpRangeClient(300_000, 1024, 600_000);
+        registry = new FileChannelRegistry("trunc", 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Setup(Level.Iteration)
+    public void newFile() throws IOException {
+        file = Files.createTempFile("dlm-range", ".bin");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Benchmark
+    public long download() throws Exception {
+        URI uri = URI.create(server.url("bench.bin", FILE_SIZE));
+        UUID id = UUID.randomUUID();
+        registry.allocate(id, file, FILE_SIZE);
+
+        long part = FILE_SIZE / segments;
+        List<Future<Long>> parts = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            long start = i * part;
+            long end = i == segments - 1 ? FILE_SIZE - 1 : start + part - 1;
+            parts.add(executor.submit(() -> fetch(uri, id, start, end)));
+        }
+
+        long total = 0;
+        for (Future<Long> f : parts) {
+            total += f.get();
+        }
+        return total;
+    }
+
+    private long fetch(URI uri, UUID id, long start, long end) throws Exception {
+        var resp = http.send(HttpRangeClient.buildRequest(uri, "bytes=" + start + "-" + end, null));
+        try (SegmentWriter writer = registry.openWriter(id, file, start, end, FILE_SIZE);
+             var body = new ByteBufferBodyStream()) {
+            resp.body().subscribe(body);
+            long position = start;
+            ByteBuffer buf;
+            while ((buf = body.next()) != null) {
+                position += writer.write(buf, position);
+            }
+            return position - start;
+        }
+    }
+}
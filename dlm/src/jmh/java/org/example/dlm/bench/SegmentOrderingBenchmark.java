@@ -0,0 +1,75 @@
+package org.example.dlm.bench;
+
+import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+import org.example.dlm.iterator.DbSegmentCollection;
+import org.example.dlm.iterator.SegmentIterator;
+import org.example.dlm.iterator.SegmentOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SegmentOrderingBenchmark {
+
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @Param({"100", "10000", "100000"})
+    private int segments;
+
+    @Param({"BY_INDEX_ASC", "BY_LEFTMOST_GAP", "BY_SMALLEST_REMAINING"})
+    private SegmentOrder order;
+
+    @Param({"8"})
+    private int pick;
+
+    private List<Segment> source;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        source = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            Segment s = new Segment();
+            s.setId((long) i + 1);
+            s.setIdx(i);
+            s.setStartByte(i * SEGMENT_SIZE);
+            s.setEndByte((i + 1) * SEGMENT_SIZE - 1);
+            int state = random.nextInt(4);
+            s.setStatus(state == 0 ? SegmentStatus.DONE : state == 1 ? SegmentStatus.RUNNING : SegmentStatus.PENDING);
+            s.setReceivedBytes(s.getStatus() == SegmentStatus.DONE ? SEGMENT_SIZE : random.nextLong(SEGMENT_SIZE));
+            source.add(s);
+        }
+        Collections.shuffle(source, random);
+    }
+
+    @Benchmark
+    public int pickPending() {
+        SegmentIterator it = new DbSegmentCollection(source, order, true).iterator();
+        int picked = 0;
+        while (it.hasNext() && picked < pick) {
+            it.next();
+            picked++;
+        }
+        return picked;
+    }
+}
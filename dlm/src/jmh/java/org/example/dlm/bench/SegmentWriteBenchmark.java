@@ -0,0 +1,111 @@
+package org.example.dlm.bench;
+
+import org.example.dlm.service.io.FileChannelRegistry;
+import org.example.dlm.service.io.SegmentWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SegmentWriteBenchmark {
+
+    private static final long FILE_SIZE = 64L * 1024 * 1024;
+
+    @Param({"8192", "65536", "1048576"})
+    private int bufferSize;
+
+    @Param({"RANDOM_ACCESS_FILE", "FILE_CHANNEL", "MMAP"})
+    private String mode;
+
+    private Path dir;
+    private Path file;
+    private ByteBuffer chunk;
+    private byte[] heapChunk;
+    private FileChannelRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("dlm-bench");
+        heapChunk = new byte[bufferSize];
+        ThreadLocalRandom.current().nextBytes(heapChunk);
+        chunk = ByteBuffer.allocateDirect(bufferSize);
+        chunk.put(heapChunk).flip();
+        registry = new FileChannelRegistry("trunc", "MMAP".equals(mode) ? FILE_SIZE : 0);
+    }
+
+    @Setup(Level.Iteration)
+    public void newFile() throws IOException {
+        file = Files.createTempFile(dir, "segment", ".bin");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long copySegment() throws IOException {
+        if ("RANDOM_ACCESS_FILE".equals(mode)) {
+            return viaRandomAccessFile();
+        }
+        return viaSegmentWriter();
+    }
+
+    private long viaRandomAccessFile() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(FILE_SIZE);
+            long position = 0;
+            while (position < FILE_SIZE) {
+                int len = (int) Math.min(bufferSize, FILE_SIZE - position);
+                chunk.clear().limit(len);
+                chunk.get(heapChunk, 0, len);
+                raf.seek(position);
+                raf.write(heapChunk, 0, len);
+                position += len;
+            }
+            return position;
+        }
+    }
+
+    private long viaSegmentWriter() throws IOException {
+        UUID id = UUID.randomUUID();
+        registry.allocate(id, file, FILE_SIZE);
+        try (SegmentWriter writer = registry.openWriter(id, file, 0, FILE_SIZE - 1, FILE_SIZE)) {
+            long position = 0;
+            while (position < FILE_SIZE) {
+                chunk.clear().limit((int) Math.min(bufferSize, FILE_SIZE - position));
+                position += writer.write(chunk, position);
+            }
+            return position;
+        }
+    }
+}
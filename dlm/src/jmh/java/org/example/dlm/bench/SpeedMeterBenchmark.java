@@ -0,0 +1,56 @@
+package org.example.dlm.bench;
+
+import org.example.dlm.service.stats.SpeedMeter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class SpeedMeterBenchmark {
+
+    @Param({"1", "8", "64"})
+    private int downloads;
+
+    private SpeedMeter meter;
+    private UUID[] ids;
+
+    @Setup
+    public void setUp() {
+        meter = new SpeedMeter();
+        ids = new UUID[downloads];
+        for (int i = 0; i < downloads; i++) {
+            ids[i] = UUID.randomUUID();
+        }
+    }
+
+    @Benchmark
+    public void onBytesDownloaded() {
+        UUID id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        meter.onBytesDownloaded(id, 65536);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void recalcAndNotify() {
+        meter.recalcAndNotify();
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.dlm.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class DataSourceConfig {
+
+    private static final int EXTRA_CONNECTIONS = 4;
+
+    @Bean
+    public static BeanPostProcessor hikariPoolSizer(Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource ds
+                        && !env.containsProperty("spring.datasource.hikari.maximum-pool-size")) {
+                    // segment tasks write progress concurrently; scheduler, dispatcher and web requests need their own
+                    int segments = "virtual".equalsIgnoreCase(env.getProperty("dlm.executor.mode", "fixed"))
+                            ? 2 * ExecutorConfig.fixedPoolSize()
+                            : ExecutorConfig.fixedPoolSize();
+                    ds.setMaximumPoolSize(segments + EXTRA_CONNECTIONS);
+                }
+                return bean;
+            }
+        };
+    }
+}
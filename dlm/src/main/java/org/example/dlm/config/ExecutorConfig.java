@@ -1,5 +1,8 @@
 package org.example.dlm.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,8 +13,21 @@ import java.util.concurrent.Executors;
 public class ExecutorConfig {
 
     @Bean(name = "downloadExecutorService", destroyMethod = "shutdown")
-    public ExecutorService downloadExecutorService() {
-        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
-        return Executors.newFixedThreadPool(cores);
+    public ExecutorService downloadExecutorService(@Value("${dlm.executor.mode:fixed}") String mode,
+                                                   MeterRegistry registry) {
+        // queue depth, active threads, and how long a segment waits before it starts (executor.idle)
+        return ExecutorServiceMetrics.monitor(registry, create(mode), "dlm-segments");
+    }
+
+    private ExecutorService create(String mode) {
+        if ("virtual".equalsIgnoreCase(mode)) {
+            return Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("dlm-segment-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(fixedPoolSize());
+    }
+
+    public static int fixedPoolSize() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
     }
 }
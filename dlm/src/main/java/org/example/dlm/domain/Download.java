@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.*;
 
-@Entity @Table(name="downloads")
+@Entity @Table(name="downloads", indexes = {
+        @Index(name="idx_downloads_owner_created", columnList="owner_id, created_at"),
+        @Index(name="idx_downloads_owner_status_created", columnList="owner_id, status, created_at")
+})
 @lombok.Getter @lombok.Setter @lombok.NoArgsConstructor
 public class Download {
     @Id
@@ -18,6 +21,14 @@ public class Download {
 
     private long totalBytes;
     private long receivedBytes;
+    private long speedLimitBps;
+    private int priority;
+
+    @Column(length = 64)
+    private String expectedSha256;
+
+    @Column(length = 512)
+    private String etag;
 
     @Enumerated(EnumType.STRING)
     private DownloadStatus status;
@@ -0,0 +1,3 @@
+package org.example.dlm.domain;
+
+public enum QueuePolicy { FIFO, SHORTEST_REMAINING }
@@ -3,10 +3,13 @@ package org.example.dlm.domain;
 import jakarta.persistence.*;
 
 @Entity @Table(name="segments",
-        uniqueConstraints=@UniqueConstraint(columnNames={"download_id","idx"}))
+        uniqueConstraints=@UniqueConstraint(columnNames={"download_id","idx"}),
+        indexes=@Index(name="idx_segments_download_status_start", columnList="download_id,status,start_byte"))
 @lombok.Getter @lombok.Setter @lombok.NoArgsConstructor
 public class Segment {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "segments_seq")
+    @SequenceGenerator(name = "segments_seq", sequenceName = "segments_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY) @JoinColumn(name="download_id", nullable=false)
@@ -17,6 +20,9 @@ public class Segment {
     private long endByte;
     private long receivedBytes;
 
+    @Column(length = 64)
+    private String sha256;
+
     @Enumerated(EnumType.STRING)
     private SegmentStatus status;
 }
@@ -14,4 +14,8 @@ public class Settings {
 
     private int  defaultSegments = 1;
     private long globalSpeedLimitBps = 0;
+    private boolean adaptiveSegments = false;
+
+    @Enumerated(EnumType.STRING)
+    private QueuePolicy queuePolicy = QueuePolicy.FIFO;
 }
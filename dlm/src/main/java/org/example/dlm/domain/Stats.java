@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
 
-@Entity @Table(name="stats")
+@Entity @Table(name="stats", indexes =
+        @Index(name="idx_stats_host_started", columnList="host, last_started_at"))
 @lombok.Getter @lombok.Setter @lombok.NoArgsConstructor
 public class Stats {
     @Id
@@ -17,6 +18,8 @@ public class Stats {
     private double avgSpeedBps;
     private double maxSpeedBps;
     private int retries;
+    private String host;
+    private int segmentCount;
     private Instant lastStartedAt;
     private Instant lastFinishedAt;
 }
@@ -1,13 +1,86 @@
 package org.example.dlm.repo;
 
 import org.example.dlm.domain.Download;
+import org.example.dlm.domain.DownloadStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface DownloadRepo extends JpaRepository<Download, UUID> {
+
+    String SUMMARY_SELECT = "select new org.example.dlm.repo.DownloadSummary(" +
+            "d.id, d.url, d.fileName, d.status, d.receivedBytes, d.totalBytes, d.speedLimitBps, d.createdAt, " +
+            "coalesce(s.avgSpeedBps, 0.0), coalesce(s.maxSpeedBps, 0.0), s.lastStartedAt, s.lastFinishedAt, " +
+            "coalesce(s.retries, 0), d.priority) " +
+            "from Download d left join Stats s on s.downloadId = d.id ";
+
     List<Download> findByOwnerId(Long ownerId);
     Optional<Download> findByIdAndOwner_Id(UUID id, Long ownerId);
+
+    @Query(SUMMARY_SELECT +
+            "where d.owner.id = :ownerId " +
+            "and (:status is null or d.status = :status) " +
+            "and (:beforeCreatedAt is null or d.createdAt < :beforeCreatedAt " +
+            "     or (d.createdAt = :beforeCreatedAt and d.id < :beforeId)) " +
+            "order by d.createdAt desc, d.id desc")
+    List<DownloadSummary> findPage(Long ownerId, DownloadStatus status,
+                                   Instant beforeCreatedAt, UUID beforeId, Limit limit);
+
+    @Query(SUMMARY_SELECT + "where d.id in :ids")
+    List<DownloadSummary> findSummaries(Collection<UUID> ids);
+
+    @Query("select d.id from Download d where d.status = :status")
+    List<UUID> findIdsByStatus(DownloadStatus status);
+
+    @Query("select distinct d.owner.id from Download d where d.status = :status")
+    List<Long> findOwnerIdsByStatus(DownloadStatus status);
+
+    long countByOwner_IdAndStatus(Long ownerId, DownloadStatus status);
+
+    @Query("select d.id from Download d " +
+            "where d.owner.id = :ownerId and d.status = org.example.dlm.domain.DownloadStatus.QUEUED " +
+            "order by d.priority desc, d.createdAt asc, d.id asc")
+    List<UUID> findQueuedFifo(Long ownerId, Limit limit);
+
+    @Query("select d.id from Download d " +
+            "where d.owner.id = :ownerId and d.status = org.example.dlm.domain.DownloadStatus.QUEUED " +
+            "order by d.priority desc, " +
+            "case when d.totalBytes > 0 then d.totalBytes - d.receivedBytes else 9223372036854775807 end asc, " +
+            "d.createdAt asc, d.id asc")
+    List<UUID> findQueuedShortestFirst(Long ownerId, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("update Download d set d.status = org.example.dlm.domain.DownloadStatus.RUNNING, d.updatedAt = :now " +
+            "where d.id = :id and d.status = org.example.dlm.domain.DownloadStatus.QUEUED")
+    int admit(UUID id, Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update Download d set d.expectedSha256 = :sha256, d.updatedAt = :now where d.id = :id")
+    int updateExpectedSha256(UUID id, String sha256, Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update Download d set d.totalBytes = :totalBytes, d.etag = :etag, " +
+            "d.expectedSha256 = coalesce(d.expectedSha256, :sha256), d.updatedAt = :now where d.id = :id")
+    int recordProbe(UUID id, long totalBytes, String etag, String sha256, Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update Download d set d.priority = :priority where d.id = :id")
+    int updatePriority(UUID id, int priority);
+
+    @Modifying
+    @Transactional
+    @Query("update Download d set d.speedLimitBps = :speedLimitBps where d.id = :id")
+    int updateSpeedLimit(UUID id, long speedLimitBps);
 }
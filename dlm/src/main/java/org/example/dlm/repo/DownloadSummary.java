@@ -0,0 +1,27 @@
+package org.example.dlm.repo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.dlm.domain.DownloadStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class DownloadSummary {
+    private final UUID id;
+    private final String url;
+    private final String fileName;
+    private final DownloadStatus status;
+    private final long receivedBytes;
+    private final long totalBytes;
+    private final long speedLimitBps;
+    private final Instant createdAt;
+    private final double avgSpeedBps;
+    private final double maxSpeedBps;
+    private final Instant lastStartedAt;
+    private final Instant lastFinishedAt;
+    private final int retries;
+    private final int priority;
+}
@@ -1,15 +1,89 @@
 package org.example.dlm.repo;
 
 import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+import org.example.dlm.iterator.SegmentOrder;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface SegmentRepo extends JpaRepository<Segment, Long> {
+    String PENDING_WHERE = "where s.download.id = :downloadId " +
+            "and s.status = org.example.dlm.domain.SegmentStatus.PENDING ";
+
     List<Segment> findByDownload_Id(UUID downloadId);
     void deleteByDownload_Id(UUID downloadId);
-}
 
+    @Query("select new org.example.dlm.repo.SegmentTally(" +
+            "count(s), " +
+            "coalesce(sum(case when s.status = org.example.dlm.domain.SegmentStatus.RUNNING then 1 else 0 end), 0), " +
+            "coalesce(sum(case when s.status <> org.example.dlm.domain.SegmentStatus.DONE then 1 else 0 end), 0), " +
+            "coalesce(sum(case when s.endByte < s.startByte then 1 else 0 end), 0), " +
+            "coalesce(sum(s.receivedBytes), 0)) " +
+            "from Segment s where s.download.id = :downloadId")
+    SegmentTally tally(UUID downloadId);
+
+    @Query("select s from Segment s " + PENDING_WHERE + "order by s.idx asc")
+    List<Segment> findPendingByIndex(UUID downloadId, Limit limit);
+
+    @Query("select s from Segment s " + PENDING_WHERE + "order by s.startByte asc, s.receivedBytes asc")
+    List<Segment> findPendingLeftmost(UUID downloadId, Limit limit);
+
+    @Query("select s from Segment s " + PENDING_WHERE +
+            "order by case when s.endByte < s.startByte then 0 " +
+            "else s.endByte - s.startByte + 1 - s.receivedBytes end asc, s.idx asc")
+    List<Segment> findPendingSmallestRemaining(UUID downloadId, Limit limit);
+
+    default List<Segment> findPending(UUID downloadId, SegmentOrder order, Limit limit) {
+        return switch (order != null ? order : SegmentOrder.BY_INDEX_ASC) {
+            case BY_INDEX_ASC -> findPendingByIndex(downloadId, limit);
+            case BY_LEFTMOST_GAP -> findPendingLeftmost(downloadId, limit);
+            case BY_SMALLEST_REMAINING -> findPendingSmallestRemaining(downloadId, limit);
+        };
+    }
+
+    @Query("select distinct s.download.id from Segment s where s.status = :status")
+    List<UUID> findDownloadIdsBySegmentStatus(SegmentStatus status);
+
+    @Query("select coalesce(max(s.idx), -1) from Segment s where s.download.id = :downloadId")
+    int findMaxIdx(UUID downloadId);
+
+    @Transactional
+    @Modifying
+    @Query("update Segment s set s.status = :status, s.receivedBytes = " +
+            "case when s.endByte >= s.startByte and :receivedBytes > s.endByte - s.startByte + 1 " +
+            "then s.endByte - s.startByte + 1 else :receivedBytes end " +
+            "where s.id = :id")
+    int updateProgress(Long id, long receivedBytes, SegmentStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update Segment s set s.sha256 = :sha256 where s.id = :id")
+    int updateDigest(Long id, String sha256);
+
+    @Transactional
+    @Modifying
+    @Query("update Segment s set s.status = org.example.dlm.domain.SegmentStatus.PENDING, " +
+            "s.receivedBytes = 0, s.sha256 = null where s.download.id = :downloadId and s.id in :ids")
+    int resetForRefetch(UUID downloadId, Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("update Segment s set s.status = org.example.dlm.domain.SegmentStatus.PENDING " +
+            "where s.status = org.example.dlm.domain.SegmentStatus.RUNNING")
+    int requeueRunning();
+
+    @Transactional
+    @Modifying
+    @Query("update Segment s set s.endByte = :endByte " +
+            "where s.id = :id and s.endByte = :expectedEnd and s.status = org.example.dlm.domain.SegmentStatus.RUNNING")
+    int shrinkEnd(Long id, long expectedEnd, long endByte);
+}
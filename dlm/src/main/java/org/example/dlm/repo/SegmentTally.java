@@ -0,0 +1,33 @@
+package org.example.dlm.repo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+
+import java.util.Collection;
+
+@Getter
+@AllArgsConstructor
+public class SegmentTally {
+    private final long total;
+    private final long running;
+    private final long unfinished;
+    private final long unbounded;
+    private final long receivedBytes;
+
+    public static SegmentTally of(Collection<Segment> segments) {
+        long running = 0, unfinished = 0, unbounded = 0, received = 0;
+        for (Segment s : segments) {
+            if (s.getStatus() == SegmentStatus.RUNNING) running++;
+            if (s.getStatus() != SegmentStatus.DONE) unfinished++;
+            if (s.getEndByte() < s.getStartByte()) unbounded++;
+            received += s.getReceivedBytes();
+        }
+        return new SegmentTally(segments.size(), running, unfinished, unbounded, received);
+    }
+
+    public boolean isRangeSupported() {
+        return total > 0 && unbounded == 0;
+    }
+}
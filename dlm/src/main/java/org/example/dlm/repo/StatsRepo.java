@@ -2,9 +2,26 @@ package org.example.dlm.repo;
 
 import org.example.dlm.domain.Stats;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface StatsRepo extends JpaRepository<Stats, UUID> {}
+public interface StatsRepo extends JpaRepository<Stats, UUID> {
+
+    Optional<Stats> findFirstByHostAndSegmentCountGreaterThanOrderByLastStartedAtDesc(String host, int segmentCount);
+
+    @Transactional
+    @Modifying
+    @Query("update Stats s set s.host = :host, s.segmentCount = :segmentCount where s.downloadId = :downloadId")
+    int updateSegmentCount(UUID downloadId, String host, int segmentCount);
+
+    @Transactional
+    @Modifying
+    @Query("update Stats s set s.retries = s.retries + 1 where s.downloadId = :downloadId")
+    int incrementRetries(UUID downloadId);
+}
@@ -1,6 +1,8 @@
 package org.example.dlm.service;
 
+import org.example.dlm.domain.DownloadStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.List;
 import java.util.UUID;
@@ -14,13 +16,39 @@ public class ActiveTaskRegistry {
     private final ConcurrentHashMap<UUID, CopyOnWriteArrayList<Future<?>>> map =
             new ConcurrentHashMap<>();
 
+    private final ConcurrentHashMap<UUID, DownloadControl> controls =
+            new ConcurrentHashMap<>();
+
     public void register(UUID downloadId, Future<?> future) {
-        map.computeIfAbsent(downloadId, id -> new CopyOnWriteArrayList<>())
-                .add(future);
+        var list = map.computeIfAbsent(downloadId, id -> new CopyOnWriteArrayList<>());
+        list.removeIf(Future::isDone);
+        list.add(future);
     }
 
     public List<Future<?>> drain(UUID downloadId) {
+        signal(downloadId, DownloadControl.State.CANCELING);
         var list = map.remove(downloadId);
         return list != null ? list : List.of();
     }
+
+    public DownloadControl control(UUID downloadId) {
+        return controls.computeIfAbsent(downloadId, id -> new DownloadControl());
+    }
+
+    public void signal(UUID downloadId, DownloadControl.State state) {
+        var control = controls.remove(downloadId);
+        if (control != null) {
+            control.signal(state);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChangedEvent event) {
+        if (event.status() == DownloadStatus.RUNNING) {
+            return;
+        }
+        signal(event.downloadId(), event.status() == DownloadStatus.CANCELED
+                ? DownloadControl.State.CANCELING
+                : DownloadControl.State.PAUSING);
+    }
 }
@@ -0,0 +1,175 @@
+package org.example.dlm.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.Stats;
+import org.example.dlm.observer.Observer;
+import org.example.dlm.observer.Subject;
+import org.example.dlm.repo.StatsRepo;
+import org.example.dlm.service.stats.SpeedMeter;
+import org.example.dlm.service.stats.SpeedState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdaptiveSegmentController implements Observer {
+
+    private final SpeedMeter speedMeter;
+    private final StatsRepo stats;
+    private final ApplicationEventPublisher events;
+
+    private final Map<UUID, AdaptiveState> states = new ConcurrentHashMap<>();
+
+    @Value("${dlm.adaptive.initial-segments:2}")
+    private int initialSegments;
+
+    @Value("${dlm.adaptive.min-gain:0.10}")
+    private double minGain;
+
+    @Value("${dlm.adaptive.evaluate-interval-ms:4000}")
+    private long evaluateIntervalMs;
+
+    @PostConstruct
+    public void register() {
+        speedMeter.attach(this);
+    }
+
+    public int targetFor(UUID downloadId, String host, int maxSegments) {
+        int max = Math.max(1, maxSegments);
+        AdaptiveState state = states.computeIfAbsent(downloadId, id -> {
+            int initial = stats.findFirstByHostAndSegmentCountGreaterThanOrderByLastStartedAtDesc(host, 0)
+                    .map(Stats::getSegmentCount)
+                    .orElse(initialSegments);
+            log.info("[Adaptive] download {} host={} starts with {} segments (max {})",
+                    id, host, Math.min(max, Math.max(1, initial)), max);
+            return new AdaptiveState(host, Math.min(max, Math.max(1, initial)), max);
+        });
+        synchronized (state) {
+            state.max = max;
+            state.target = Math.min(state.target, max);
+            return state.target;
+        }
+    }
+
+    public boolean onRangeRejected(UUID downloadId) {
+        AdaptiveState state = states.get(downloadId);
+        if (state == null) return false;
+
+        synchronized (state) {
+            state.settled = true;
+            if (state.target <= 1) {
+                return false;
+            }
+            state.target--;
+            state.bestTarget = Math.min(state.bestTarget, state.target);
+            log.info("[Adaptive] download {} host={} rejected a Range request, back off to {} segments",
+                    downloadId, state.host, state.target);
+        }
+        record(downloadId, state);
+        return true;
+    }
+
+    public void forget(UUID downloadId) {
+        AdaptiveState state = states.remove(downloadId);
+        if (state != null) {
+            record(downloadId, state);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChangedEvent event) {
+        if (event.status() != DownloadStatus.RUNNING) {
+            forget(event.downloadId());
+        }
+    }
+
+    @Override
+    public void update(Subject subject) {
+        if (!(subject instanceof SpeedMeter meter)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<UUID, AdaptiveState> entry : states.entrySet()) {
+            AdaptiveState state = entry.getValue();
+            double rate = meter.getState(entry.getKey())
+                    .map(SpeedState::getAvgSpeedBps)
+                    .orElse(0.0);
+
+            Integer grown = evaluate(state, rate, now);
+            if (grown == null) {
+                continue;
+            }
+            if (state.settled) {
+                record(entry.getKey(), state);
+            } else {
+                events.publishEvent(new SegmentTargetChangedEvent(entry.getKey(), grown));
+            }
+        }
+    }
+
+    private Integer evaluate(AdaptiveState state, double rate, long now) {
+        synchronized (state) {
+            if (state.settled || rate <= 0) return null;
+            if (state.lastChangeMs == 0) {
+                state.lastChangeMs = now;
+                return null;
+            }
+            if (now - state.lastChangeMs < evaluateIntervalMs) return null;
+
+            if (rate > state.bestRate * (1.0 + minGain)) {
+                state.bestRate = rate;
+                state.bestTarget = state.target;
+                if (state.target >= state.max) {
+                    state.settled = true;
+                } else {
+                    state.target++;
+                }
+            } else {
+                state.settled = true;
+                state.target = state.bestTarget;
+            }
+            state.lastChangeMs = now;
+            return state.target;
+        }
+    }
+
+    private void record(UUID downloadId, AdaptiveState state) {
+        int count;
+        synchronized (state) {
+            count = state.bestTarget;
+        }
+        try {
+            stats.updateSegmentCount(downloadId, state.host, count);
+        } catch (Exception ex) {
+            log.warn("[Adaptive] cannot record segment count for {}: {}", downloadId, ex.toString());
+        }
+    }
+
+    private static final class AdaptiveState {
+        private final String host;
+        private int target;
+        private int bestTarget;
+        private int max;
+        private double bestRate;
+        private long lastChangeMs;
+        private boolean settled;
+
+        private AdaptiveState(String host, int target, int max) {
+            this.host = host;
+            this.target = target;
+            this.bestTarget = target;
+            this.max = max;
+        }
+    }
+}
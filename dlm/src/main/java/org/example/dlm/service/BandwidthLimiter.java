@@ -0,0 +1,140 @@
+package org.example.dlm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.domain.DownloadStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+@Slf4j
+@Component
+public class BandwidthLimiter {
+
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long burstMs;
+    private final TokenBucket global;
+
+    private final ConcurrentHashMap<Long, TokenBucket> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, TokenBucket> byDownload = new ConcurrentHashMap<>();
+
+    private final AtomicLong limitsVersion = new AtomicLong();
+
+    public BandwidthLimiter(@Value("${dlm.bandwidth.global-limit-bps:0}") long globalLimitBps,
+                            @Value("${dlm.bandwidth.burst-ms:1000}") long burstMs) {
+        this.burstMs = Math.max(1, burstMs);
+        this.global = new TokenBucket(Math.max(0, globalLimitBps), this.burstMs);
+    }
+
+    public void setUserLimit(Long userId, long bps) {
+        if (userId != null && apply(byUser, userId, bps)) {
+            log.info("[Bandwidth] user {} limit {} B/s", userId, bps);
+        }
+    }
+
+    public void setDownloadLimit(UUID downloadId, long bps) {
+        if (downloadId != null && apply(byDownload, downloadId, bps)) {
+            log.info("[Bandwidth] download {} limit {} B/s", downloadId, bps);
+        }
+    }
+
+    public void forgetDownload(UUID downloadId) {
+        if (byDownload.remove(downloadId) != null) {
+            limitsVersion.incrementAndGet();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChangedEvent event) {
+        if (event.status() != DownloadStatus.RUNNING) {
+            forgetDownload(event.downloadId());
+        }
+    }
+
+    public void acquire(Long userId, UUID downloadId, long bytes, BooleanSupplier stillWanted)
+            throws InterruptedException {
+        if (bytes <= 0) return;
+
+        long version = limitsVersion.get();
+        long now = System.nanoTime();
+
+        long wait = global.reserve(bytes, now);
+        TokenBucket user = userId != null ? byUser.get(userId) : null;
+        if (user != null) {
+            wait = Math.max(wait, user.reserve(bytes, now));
+        }
+        TokenBucket download = downloadId != null ? byDownload.get(downloadId) : null;
+        if (download != null) {
+            wait = Math.max(wait, download.reserve(bytes, now));
+        }
+
+        long deadline = now + wait;
+        while (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(wait, WAIT_SLICE_NANOS));
+            if (!stillWanted.getAsBoolean() || limitsVersion.get() != version) {
+                return;
+            }
+            wait = deadline - System.nanoTime();
+        }
+    }
+
+    private <K> boolean apply(ConcurrentHashMap<K, TokenBucket> buckets, K key, long bps) {
+        boolean changed;
+        if (bps <= 0) {
+            changed = buckets.remove(key) != null;
+        } else {
+            TokenBucket existing = buckets.putIfAbsent(key, new TokenBucket(bps, burstMs));
+            changed = existing == null || existing.setRate(bps);
+        }
+        if (changed) {
+            limitsVersion.incrementAndGet();
+        }
+        return changed;
+    }
+
+    static final class TokenBucket {
+        private final long burstMs;
+        private long rateBps;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(long rateBps, long burstMs) {
+            this.burstMs = burstMs;
+            this.rateBps = rateBps;
+            this.tokens = capacity();
+            this.refilledAt = System.nanoTime();
+        }
+
+        synchronized long reserve(long bytes, long now) {
+            if (rateBps <= 0) return 0;
+            refill(now);
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1_000_000_000d / rateBps);
+        }
+
+        synchronized boolean setRate(long bps) {
+            if (bps == rateBps) return false;
+            refill(System.nanoTime());
+            rateBps = bps;
+            tokens = Math.max(0, Math.min(tokens, capacity()));
+            return true;
+        }
+
+        private void refill(long now) {
+            if (rateBps > 0) {
+                tokens = Math.min(capacity(), tokens + (now - refilledAt) * (double) rateBps / 1_000_000_000d);
+            }
+            refilledAt = now;
+        }
+
+        private double capacity() {
+            return Math.max(1d, rateBps * (double) burstMs / 1000d);
+        }
+    }
+}
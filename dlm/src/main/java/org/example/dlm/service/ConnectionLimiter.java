@@ -0,0 +1,80 @@
+package org.example.dlm.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+@Component
+public class ConnectionLimiter {
+
+    private static final long WAIT_SLICE_MS = 200L;
+
+    private final Semaphore global;
+    private final int maxPerHost;
+    private final int maxPerUser;
+
+    private final ConcurrentHashMap<String, Semaphore> byHost = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Semaphore> byUser = new ConcurrentHashMap<>();
+
+    public ConnectionLimiter(@Value("${dlm.connections.max-global:64}") int maxGlobal,
+                             @Value("${dlm.connections.max-per-host:8}") int maxPerHost,
+                             @Value("${dlm.connections.max-per-user:32}") int maxPerUser) {
+        this.global = maxGlobal > 0 ? new Semaphore(maxGlobal, true) : null;
+        this.maxPerHost = maxPerHost;
+        this.maxPerUser = maxPerUser;
+    }
+
+    public Permit acquire(String host, Long userId, BooleanSupplier stillWanted) throws InterruptedException {
+        List<Semaphore> order = new ArrayList<>(3);
+        if (maxPerUser > 0 && userId != null) {
+            order.add(byUser.computeIfAbsent(userId, id -> new Semaphore(maxPerUser, true)));
+        }
+        if (maxPerHost > 0 && host != null) {
+            order.add(byHost.computeIfAbsent(host.toLowerCase(), h -> new Semaphore(maxPerHost, true)));
+        }
+        if (global != null) {
+            order.add(global);
+        }
+
+        List<Semaphore> held = new ArrayList<>(order.size());
+        try {
+            for (Semaphore sem : order) {
+                while (!sem.tryAcquire(WAIT_SLICE_MS, TimeUnit.MILLISECONDS)) {
+                    if (!stillWanted.getAsBoolean()) {
+                        return null;
+                    }
+                }
+                held.add(sem);
+            }
+            Permit permit = new Permit(held);
+            held = null;
+            return permit;
+        } finally {
+            if (held != null) {
+                held.forEach(Semaphore::release);
+            }
+        }
+    }
+
+    public static final class Permit implements AutoCloseable {
+        private final List<Semaphore> held;
+        private boolean released;
+
+        private Permit(List<Semaphore> held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            held.forEach(Semaphore::release);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.dlm.service;
+
+public class DownloadControl {
+
+    public enum State { RUNNING, PAUSING, CANCELING }
+
+    private volatile State state = State.RUNNING;
+
+    public State state() {
+        return state;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    void signal(State next) {
+        if (next == State.RUNNING || state == State.CANCELING) {
+            return;
+        }
+        state = next;
+    }
+}
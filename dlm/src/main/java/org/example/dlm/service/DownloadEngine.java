@@ -1,5 +1,6 @@
 package org.example.dlm.service;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.dlm.domain.Download;
@@ -9,20 +10,37 @@ import org.example.dlm.domain.SegmentStatus;
 import org.example.dlm.domain.Settings;
 import org.example.dlm.repo.DownloadRepo;
 import org.example.dlm.repo.SegmentRepo;
+import org.example.dlm.repo.SegmentTally;
 import org.example.dlm.repo.StatsRepo;
+import org.example.dlm.service.io.FileChannelRegistry;
+import org.example.dlm.service.metrics.EngineMetrics;
+import org.example.dlm.service.progress.ProgressCheckpointer;
+import org.example.dlm.service.progress.ProgressFlusher;
+import org.example.dlm.service.progress.SegmentProgressLedger;
 import org.example.dlm.service.stats.SpeedMeter;
 import org.example.dlm.service.stats.StatsObserver;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 @Slf4j
 @Service
@@ -37,130 +55,348 @@ public class DownloadEngine {
     private final ActiveTaskRegistry activeTaskRegistry;
 
     private final SpeedMeter speedMeter;
+    private final EngineMetrics metrics;
+    private final SegmentProgressLedger progressLedger;
+    private final ProgressFlusher progressFlusher;
+    private final ProgressCheckpointer checkpointer;
+    private final ResumeRecovery recovery;
+    private final ConnectionLimiter connectionLimiter;
+    private final RetryPolicy retryPolicy;
+    private final DownloadQueue downloadQueue;
+    private final BandwidthLimiter bandwidth;
+    private final FileChannelRegistry fileChannels;
+    private final AdaptiveSegmentController adaptiveSegments;
+    private final SegmentSplitter segmentSplitter;
+    private final ApplicationEventPublisher events;
+    private final IntegrityVerifier integrity;
 
     @SuppressWarnings("unused")
     private final StatsObserver statsObserver;
 
     private final @Qualifier("downloadExecutorService") ExecutorService downloadExecutor;
 
-    private final HttpRangeClient http = new HttpRangeClient();
+    private final HttpRangeClient http;
 
-    @Scheduled(fixedDelay = 1000)
-    public void tick() {
-        List<Download> active = downloads.findAll().stream()
-                .filter(d -> d.getStatus() == DownloadStatus.RUNNING)
-                .toList();
+    @Value("${dlm.segments.dynamic-split:true}")
+    private boolean dynamicSplit;
 
-        if (!active.isEmpty()) {
-            log.info("[Engine] tick: {} active downloads", active.size());
+    private final BlockingQueue<UUID> runQueue = new LinkedBlockingQueue<>();
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> verifying = ConcurrentHashMap.newKeySet();
+
+    private volatile Thread dispatcher;
+
+    // listeners of the status events must exist before the first download is dispatched
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        try {
+            recovery.recover();
+            reconcile();
+        } catch (Exception ex) {
+            log.error("[Engine] startup recovery failed: {}", ex.toString(), ex);
+        }
+
+        Thread t = new Thread(this::dispatchLoop, "dlm-engine");
+        t.setDaemon(true);
+        dispatcher = t;
+        t.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = dispatcher;
+        dispatcher = null;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    public void wake(UUID downloadId) {
+        if (downloadId != null && queued.add(downloadId)) {
+            runQueue.offer(downloadId);
         }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChangedEvent event) {
+        if (event.status() == DownloadStatus.RUNNING) {
+            wake(event.downloadId());
+        }
+    }
+
+    @EventListener
+    public void onSegmentTargetChanged(SegmentTargetChangedEvent event) {
+        wake(event.downloadId());
+    }
+
+    @Scheduled(fixedDelayString = "${dlm.engine.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        List<UUID> running = downloads.findIdsByStatus(DownloadStatus.RUNNING);
+        if (!running.isEmpty()) {
+            log.debug("[Engine] reconcile: {} running downloads", running.size());
+        }
+        running.forEach(this::wake);
+    }
 
-        for (Download d : active) {
+    private void dispatchLoop() {
+        while (dispatcher != null) {
+            UUID downloadId;
             try {
-                runDownload(d);
+                downloadId = runQueue.take();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queued.remove(downloadId);
+
+            try {
+                process(downloadId);
             } catch (Exception ex) {
-                log.error("[Engine] ERROR in runDownload for {}: {}", d.getId(), ex.toString(), ex);
-                d.setStatus(DownloadStatus.ERROR);
-                d.setUpdatedAt(Instant.now());
-                downloads.save(d);
+                log.error("[Engine] dispatch failed for {}: {}", downloadId, ex.toString(), ex);
             }
         }
     }
 
+    private void process(UUID downloadId) {
+        Download d = downloads.findById(downloadId).orElse(null);
+        if (d == null || d.getStatus() != DownloadStatus.RUNNING) {
+            return;
+        }
+
+        try {
+            runDownload(d);
+        } catch (Exception ex) {
+            log.error("[Engine] ERROR in runDownload for {}: {}", d.getId(), ex.toString(), ex);
+            DownloadStatus previous = d.getStatus();
+            d.setStatus(DownloadStatus.ERROR);
+            d.setUpdatedAt(Instant.now());
+            downloads.save(d);
+            events.publishEvent(new DownloadStatusChangedEvent(d.getId(), d.getOwner().getId(),
+                    previous, DownloadStatus.ERROR));
+        }
+    }
+
     private void runDownload(Download d) throws Exception {
+        boolean dirty = false;
         if (d.getFileName() == null || d.getFileName().isBlank()) {
             d.setFileName(downloadService.filenameFromUrl(d.getUrl()));
+            dirty = true;
         }
         if (d.getSavePath() == null || d.getSavePath().isBlank()) {
             d.setSavePath(downloadService.defaultSavePath());
+            dirty = true;
+        }
+        if (dirty) {
+            d = downloads.save(d);
         }
-        downloads.save(d);
 
         Path filePath = downloadService.pathFor(d);
         Files.createDirectories(filePath.getParent());
+        checkpointer.attach(d.getId(), filePath);
 
         Settings settings = settingsService.getOrCreate(d.getOwner().getId());
-        int defaultSegments = Math.max(1, settings.getDefaultSegments());
-        long globalSpeedLimitBps = Math.max(0, settings.getGlobalSpeedLimitBps());
+        int defaultSegments = downloadQueue.segmentCap(Math.max(1, settings.getDefaultSegments()));
+        boolean adaptive = settings.isAdaptiveSegments();
+        int parallelCap = adaptive
+                ? adaptiveSegments.targetFor(d.getId(), URI.create(d.getUrl()).getHost(), defaultSegments)
+                : defaultSegments;
+        bandwidth.setUserLimit(d.getOwner().getId(), settings.getGlobalSpeedLimitBps());
+        bandwidth.setDownloadLimit(d.getId(), d.getSpeedLimitBps());
 
-        List<Segment> segs = segments.findByDownload_Id(d.getId());
-        if (segs.isEmpty()) {
+        List<Segment> launched = List.of();
+        SegmentTally tally = segments.tally(d.getId());
+        if (tally.getTotal() == 0) {
             log.info("[Engine] probe {} ({})", d.getId(), d.getUrl());
 
             var probe = http.probe(URI.create(d.getUrl()));
-            d.setUpdatedAt(Instant.now());
             if (probe.contentLength > 0) {
                 d.setTotalBytes(probe.contentLength);
             }
-            downloads.save(d);
-
-            log.info("[Engine] probe result: rangeSupported={} totalBytes={}",
-                    probe.rangeSupported, d.getTotalBytes());
-
-            if (probe.rangeSupported && d.getTotalBytes() > 0) {
-                long part = Math.max(1, d.getTotalBytes() / defaultSegments);
-                long start = 0;
-                for (int i = 0; i < defaultSegments; i++) {
-                    long end = (i == defaultSegments - 1)
-                            ? d.getTotalBytes() - 1
-                            : (start + part - 1);
-                    createSegment(d, i, start, end);
-                    start = end + 1;
-                }
-            } else {
-                createSegment(d, 0, 0, d.getTotalBytes() > 0 ? d.getTotalBytes() - 1 : -1);
+            d.setEtag(probe.etag);
+            if (d.getExpectedSha256() == null) {
+                d.setExpectedSha256(probe.sha256);
             }
-            segs = segments.findByDownload_Id(d.getId());
-            log.info("[Engine] created {} segments for {}", segs.size(), d.getId());
+            downloads.recordProbe(d.getId(), d.getTotalBytes(), probe.etag, probe.sha256, Instant.now());
+
+            log.info("[Engine] probe result: rangeSupported={} totalBytes={} etag={}",
+                    probe.rangeSupported, d.getTotalBytes(), probe.etag);
+
+            fileChannels.allocate(d.getId(), filePath, d.getTotalBytes());
+
+            // the first wave is inserted as RUNNING, so starting it needs no further writes
+            List<Segment> plan = planSegments(d, probe.rangeSupported, parallelCap);
+            plan.stream().limit(parallelCap).forEach(s -> s.setStatus(SegmentStatus.RUNNING));
+            List<Segment> created = segments.saveAll(plan);
+            tally = SegmentTally.of(created);
+            launched = created.stream().filter(s -> s.getStatus() == SegmentStatus.RUNNING).toList();
+            log.info("[Engine] created {} segments for {}, starting {}", created.size(), d.getId(), launched.size());
         }
 
-        int parallelCap = defaultSegments;
+        boolean rangeSupported = tally.isRangeSupported();
+
+        int free = (int) Math.max(0, parallelCap - tally.getRunning());
 
-        List<Segment> toStart = downloadService.pickSegmentsForRun(d.getId(), parallelCap);
-        log.info("[Engine] picked {} segments to start for {}", toStart.size(), d.getId());
+        List<Segment> toStart = free > 0 && launched.isEmpty()
+                ? downloadService.pickSegmentsForRun(d.getId(), free)
+                : List.of();
+        if (!toStart.isEmpty()) {
+            log.info("[Engine] picked {} segments to start for {}", toStart.size(), d.getId());
+        }
 
+        for (Segment s : launched) {
+            start(d, s, filePath, rangeSupported);
+        }
         for (Segment s : toStart) {
             if (s.getStatus() != SegmentStatus.PENDING) continue;
+            submit(d, s, filePath, rangeSupported);
+        }
 
-            s.setStatus(SegmentStatus.RUNNING);
-            segments.save(s);
-
-            boolean rangeSupported = isRangeSupportedForDownload(d);
-            var task = new SegmentTask(
-                    new HttpRangeClient(),
-                    segments,
-                    downloads,
-                    d,
-                    s,
-                    filePath,
-                    rangeSupported,
-                    globalSpeedLimitBps,
-                    defaultSegments,
-                    speedMeter
-            );
-            log.info("[Engine] submit SegmentTask download={} segId={} idx={} (limit={} B/s, segs={})",
-                    d.getId(), s.getId(), s.getIdx(), globalSpeedLimitBps, defaultSegments);
-
-            Future<?> future = downloadExecutor.submit(task);
-            activeTaskRegistry.register(d.getId(), future);
-        }
-
-        boolean left = segments.findByDownload_Id(d.getId()).stream()
-                .anyMatch(s -> s.getStatus() != SegmentStatus.DONE);
-        if (!left) {
-            d.setStatus(DownloadStatus.COMPLETED);
+        if ((dynamicSplit || adaptive) && rangeSupported && d.getTotalBytes() > 0) {
+            for (free -= toStart.size(); free > 0; free--) {
+                Segment tail = segmentSplitter.splitLargest(d.getId());
+                if (tail == null) break;
+                submit(d, tail, filePath, rangeSupported);
+            }
+        }
+
+        if (tally.getUnfinished() == 0 && verifying.add(d.getId())) {
+            Download done = d;
+            List<Segment> doneSegs = segments.findByDownload_Id(d.getId());
+            if (integrity.needsReadPass(d, doneSegs)) {
+                log.info("[Engine] verifying sha256 of {} in background", d.getId());
+                downloadExecutor.submit(() -> verifyAndComplete(done, doneSegs, filePath));
+            } else {
+                verifyAndComplete(done, doneSegs, filePath);
+            }
+        }
+    }
+
+    private void verifyAndComplete(Download d, List<Segment> segs, Path filePath) {
+        boolean refetch = false;
+        try {
+            IntegrityVerifier.Result result = integrity.verify(d, segs, filePath);
+            switch (result.outcome()) {
+                case OK -> complete(d.getId(), segs);
+                case REFETCH -> {
+                    log.warn("[Engine] download {} failed verification ({}), re-fetching segments {}",
+                            d.getId(), result.detail(), result.segmentIds());
+                    segments.resetForRefetch(d.getId(), result.segmentIds());
+                    progressLedger.forgetDownload(d.getId());
+                    progressLedger.touch(d.getId());
+                    refetch = true;
+                }
+                case MISMATCH -> {
+                    log.error("[Engine] download {} failed verification: {}", d.getId(), result.detail());
+                    segments.resetForRefetch(d.getId(), segs.stream().map(Segment::getId).toList());
+                    progressLedger.forgetDownload(d.getId());
+                    progressLedger.touch(d.getId());
+                    fail(d.getId());
+                }
+            }
+        } catch (Exception ex) {
+            log.error("[Engine] verification of {} failed: {}", d.getId(), ex.toString(), ex);
+            fail(d.getId());
+        } finally {
+            verifying.remove(d.getId());
+            if (refetch) {
+                wake(d.getId());
+            }
+        }
+    }
+
+    private void complete(UUID downloadId, List<Segment> segs) {
+        Download d = downloads.findById(downloadId).orElse(null);
+        if (d == null || d.getStatus() != DownloadStatus.RUNNING) {
+            return;
+        }
+        d.setReceivedBytes(segs.stream().mapToLong(Segment::getReceivedBytes).sum());
+        adaptiveSegments.forget(d.getId());
+        bandwidth.forgetDownload(d.getId());
+        checkpointer.discard(d.getId(), downloadService.pathFor(d));
+        d.setStatus(DownloadStatus.COMPLETED);
+        d.setUpdatedAt(Instant.now());
+        downloads.save(d);
+        log.info("[Engine] download {} COMPLETED", d.getId());
+
+        stats.findById(d.getId()).ifPresent(st -> {
+            st.setLastFinishedAt(Instant.now());
+            stats.save(st);
+        });
+
+        events.publishEvent(new DownloadStatusChangedEvent(d.getId(), d.getOwner().getId(),
+                DownloadStatus.RUNNING, DownloadStatus.COMPLETED));
+    }
+
+    private void fail(UUID downloadId) {
+        downloads.findById(downloadId).ifPresent(d -> {
+            if (d.getStatus() != DownloadStatus.RUNNING) return;
+            d.setStatus(DownloadStatus.ERROR);
             d.setUpdatedAt(Instant.now());
             downloads.save(d);
-            log.info("[Engine] download {} COMPLETED", d.getId());
+            events.publishEvent(new DownloadStatusChangedEvent(d.getId(), d.getOwner().getId(),
+                    DownloadStatus.RUNNING, DownloadStatus.ERROR));
+        });
+    }
+
+    private void submit(Download d, Segment s, Path filePath, boolean rangeSupported) {
+        s.setStatus(SegmentStatus.RUNNING);
+        segments.save(s);
+        start(d, s, filePath, rangeSupported);
+    }
+
+    private void start(Download d, Segment s, Path filePath, boolean rangeSupported) {
+        var task = new SegmentTask(
+                http,
+                segments,
+                downloads,
+                stats,
+                d,
+                s,
+                activeTaskRegistry.control(d.getId()),
+                filePath,
+                rangeSupported,
+                bandwidth,
+                speedMeter,
+                metrics,
+                progressLedger,
+                progressFlusher,
+                checkpointer,
+                this::wake,
+                this::fail,
+                connectionLimiter,
+                retryPolicy,
+                fileChannels,
+                adaptiveSegments,
+                integrity.hashesSegments(d)
+        );
+        log.debug("[Engine] submit SegmentTask download={} segId={} idx={}",
+                d.getId(), s.getId(), s.getIdx());
+
+        Future<?> future = downloadExecutor.submit(task);
+        activeTaskRegistry.register(d.getId(), future);
+    }
 
-            stats.findById(d.getId()).ifPresent(st -> {
-                st.setLastFinishedAt(Instant.now());
-                stats.save(st);
-            });
+    private static List<Segment> planSegments(Download d, boolean rangeSupported, int parallelCap) {
+        if (!rangeSupported || d.getTotalBytes() <= 0) {
+            return List.of(newSegment(d, 0, 0, d.getTotalBytes() > 0 ? d.getTotalBytes() - 1 : -1));
         }
+        List<Segment> plan = new ArrayList<>(parallelCap);
+        long part = Math.max(1, d.getTotalBytes() / parallelCap);
+        long start = 0;
+        for (int i = 0; i < parallelCap; i++) {
+            long end = (i == parallelCap - 1)
+                    ? d.getTotalBytes() - 1
+                    : (start + part - 1);
+            plan.add(newSegment(d, i, start, end));
+            start = end + 1;
+        }
+        return plan;
     }
 
-    private void createSegment(Download d, int idx, long start, long end) {
+    private static Segment newSegment(Download d, int idx, long start, long end) {
         Segment s = new Segment();
         s.setDownload(d);
         s.setIdx(idx);
@@ -168,15 +404,7 @@ public class DownloadEngine {
         s.setEndByte(end);
         s.setReceivedBytes(0);
         s.setStatus(SegmentStatus.PENDING);
-        segments.save(s);
-        log.info("[Engine] segment created download={} segId={} idx={} [{}, {}]",
-                d.getId(), s.getId(), idx, start, end);
-    }
-
-    private boolean isRangeSupportedForDownload(Download d) {
-        var segs = segments.findByDownload_Id(d.getId());
-        return !segs.isEmpty()
-                && segs.stream().allMatch(s -> s.getEndByte() >= s.getStartByte());
+        return s;
     }
 
 }
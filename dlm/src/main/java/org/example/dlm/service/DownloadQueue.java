@@ -0,0 +1,100 @@
+package org.example.dlm.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.QueuePolicy;
+import org.example.dlm.domain.Settings;
+import org.example.dlm.repo.DownloadRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DownloadQueue {
+
+    private final DownloadRepo downloads;
+    private final SettingsService settingsService;
+    private final ApplicationEventPublisher events;
+
+    private final Set<Long> pendingUsers = ConcurrentHashMap.newKeySet();
+
+    @Getter
+    @Value("${dlm.queue.max-active-per-user:3}")
+    private int maxActivePerUser;
+
+    @Getter
+    @Value("${dlm.queue.max-segments-per-user:16}")
+    private int maxSegmentsPerUser;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChangedEvent event) {
+        if (event.status() == DownloadStatus.QUEUED || event.previous() == DownloadStatus.RUNNING) {
+            pendingUsers.add(event.userId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${dlm.engine.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        pendingUsers.addAll(downloads.findOwnerIdsByStatus(DownloadStatus.QUEUED));
+    }
+
+    @Scheduled(fixedDelayString = "${dlm.queue.admit-interval-ms:500}")
+    public void admitPending() {
+        for (Long userId : pendingUsers) {
+            if (!pendingUsers.remove(userId)) continue;
+            try {
+                admit(userId);
+            } catch (Exception ex) {
+                log.warn("[Queue] admission failed for user {}: {}", userId, ex.toString());
+            }
+        }
+    }
+
+    public int segmentCap(int requested) {
+        return maxSegmentsPerUser > 0 ? Math.min(requested, maxSegmentsPerUser) : requested;
+    }
+
+    private void admit(Long userId) {
+        Settings settings = settingsService.getOrCreate(userId);
+        int perDownload = segmentCap(Math.max(1, settings.getDefaultSegments()));
+
+        long active = downloads.countByOwner_IdAndStatus(userId, DownloadStatus.RUNNING);
+        int slots = Integer.MAX_VALUE;
+        if (maxActivePerUser > 0) {
+            slots = (int) Math.max(0, maxActivePerUser - active);
+        }
+        if (maxSegmentsPerUser > 0) {
+            long bySegments = maxSegmentsPerUser / perDownload - active;
+            slots = (int) Math.min(slots, Math.max(active == 0 ? 1 : 0, bySegments));
+        }
+        if (slots <= 0) {
+            return;
+        }
+
+        Limit limit = Limit.of(Math.min(slots, 1000));
+        List<UUID> next = settings.getQueuePolicy() == QueuePolicy.SHORTEST_REMAINING
+                ? downloads.findQueuedShortestFirst(userId, limit)
+                : downloads.findQueuedFifo(userId, limit);
+
+        for (UUID id : next) {
+            if (downloads.admit(id, Instant.now()) == 0) continue;
+            log.info("[Queue] admitted {} for user {} ({} active, limit {})",
+                    id, userId, ++active, maxActivePerUser);
+            events.publishEvent(new DownloadStatusChangedEvent(id, userId,
+                    DownloadStatus.QUEUED, DownloadStatus.RUNNING));
+        }
+    }
+}
@@ -5,16 +5,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.dlm.domain.Download;
 import org.example.dlm.domain.DownloadStatus;
 import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
 import org.example.dlm.domain.Stats;
 import org.example.dlm.iterator.DbSegmentCollection;
 import org.example.dlm.iterator.SegmentIterator;
 import org.example.dlm.iterator.SegmentOrder;
 import org.example.dlm.repo.DownloadRepo;
+import org.example.dlm.repo.DownloadSummary;
 import org.example.dlm.repo.SegmentRepo;
 import org.example.dlm.repo.StatsRepo;
 import org.example.dlm.repo.UserRepo;
 import org.example.dlm.composite.DownloadGroupComposite;
 import org.example.dlm.composite.SingleDownloadLeaf;
+import org.example.dlm.service.progress.ProgressCheckpointer;
+import org.example.dlm.service.progress.SegmentProgressLedger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,7 +29,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Future;
@@ -38,12 +43,23 @@ public class DownloadService {
     private final StatsRepo stats;
     private final UserRepo users;
     private final ActiveTaskRegistry activeTaskRegistry;
+    private final BandwidthLimiter bandwidth;
+    private final ProgressCheckpointer checkpointer;
+    private final SegmentProgressLedger progressLedger;
+    private final ApplicationEventPublisher events;
 
     @Transactional(readOnly = true)
     public List<Download> listByUser(Long userId) {
         return downloads.findByOwnerId(userId);
     }
 
+    @Transactional(readOnly = true)
+    public List<DownloadSummary> pageForUser(Long userId, DownloadStatus status,
+                                             Instant beforeCreatedAt, UUID beforeId, int size) {
+        return downloads.findPage(userId, status,
+                beforeId != null ? beforeCreatedAt : null, beforeId, Limit.of(Math.max(1, size)));
+    }
+
     @Transactional
     public Download addUrl(Long userId, String url) {
         validateUrl(url);
@@ -74,6 +90,7 @@ public class DownloadService {
             stats.save(s);
         }
 
+        events.publishEvent(new DownloadStatusChangedEvent(saved.getId(), userId, null, DownloadStatus.QUEUED));
         return saved;
     }
 
@@ -83,8 +100,13 @@ public class DownloadService {
                 .orElseThrow(() -> new IllegalArgumentException("Завантаження не знайдено або вам не належить"));
 
         DownloadStatus prev = d.getStatus();
+        DownloadStatus requested = status;
+        if (status == DownloadStatus.RUNNING && prev != DownloadStatus.RUNNING) {
+            status = DownloadStatus.QUEUED;
+        }
 
-        if (prev == DownloadStatus.CANCELED && status == DownloadStatus.RUNNING) {
+        if (prev == DownloadStatus.CANCELED && requested == DownloadStatus.RUNNING) {
+            checkpointer.discard(downloadId, pathFor(d));
             segments.deleteByDownload_Id(downloadId);
             d.setReceivedBytes(0L);
             d.setTotalBytes(0L);
@@ -107,7 +129,7 @@ public class DownloadService {
 
         Instant now = Instant.now();
 
-        if (status == DownloadStatus.RUNNING) {
+        if (requested == DownloadStatus.RUNNING) {
             if (prev != DownloadStatus.RUNNING) {
                 s.setRetries(s.getRetries() + 1);
             }
@@ -121,8 +143,33 @@ public class DownloadService {
         }
 
         stats.save(s);
+
+        events.publishEvent(new DownloadStatusChangedEvent(downloadId, userId, prev, status));
     }
 
+    @Transactional
+    public void setSpeedLimitForUser(Long userId, UUID downloadId, long speedLimitBps) {
+        downloads.findByIdAndOwner_Id(downloadId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Завантаження не знайдено або вам не належить"));
+
+        long limit = Math.max(0, speedLimitBps);
+        downloads.updateSpeedLimit(downloadId, limit);
+        bandwidth.setDownloadLimit(downloadId, limit);
+    }
+
+    @Transactional
+    public void changePriorityForUser(Long userId, UUID downloadId, int delta) {
+        var d = downloads.findByIdAndOwner_Id(downloadId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Завантаження не знайдено або вам не належить"));
+        downloads.updatePriority(downloadId, d.getPriority() + Integer.signum(delta));
+    }
+
+    @Transactional
+    public void setExpectedSha256ForUser(Long userId, UUID downloadId, String sha256) {
+        downloads.findByIdAndOwner_Id(downloadId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Завантаження не знайдено або вам не належить"));
+        downloads.updateExpectedSha256(downloadId, IntegrityVerifier.normalizeSha256(sha256), Instant.now());
+    }
 
     @Transactional
     public void deleteForUser(Long userId, UUID downloadId) {
@@ -137,11 +184,13 @@ public class DownloadService {
 
         List<Future<?>> futures = activeTaskRegistry.drain(downloadId);
         for (Future<?> f : futures) {
-            f.cancel(true);
+            f.cancel(false);
         }
 
         segments.deleteByDownload_Id(downloadId);
         stats.deleteById(downloadId);
+        checkpointer.discard(downloadId, filePath);
+        progressLedger.forgetDownload(downloadId);
         downloads.deleteById(downloadId);
 
         for (int attempt = 1; attempt <= 3; attempt++) {
@@ -180,14 +229,23 @@ public class DownloadService {
 
     @Transactional(readOnly = true)
     public List<Segment> pickSegmentsForRun(UUID downloadId, int limit) {
-        var it = iteratorForDownload(downloadId, SegmentOrder.BY_LEFTMOST_GAP, true);
-        int cap = Math.max(1, limit);
+        return segments.findPending(downloadId, SegmentOrder.BY_LEFTMOST_GAP, Limit.of(Math.max(1, limit)));
+    }
 
-        List<Segment> picked = new ArrayList<>(cap);
-        while (it.hasNext() && picked.size() < cap) {
-            picked.add(it.next());
+    @Transactional
+    public Segment splitSegment(UUID downloadId, Long segmentId, long expectedEnd, long splitAt) {
+        if (segments.shrinkEnd(segmentId, expectedEnd, splitAt - 1) == 0) {
+            return null;
         }
-        return picked;
+
+        Segment tail = new Segment();
+        tail.setDownload(downloads.getReferenceById(downloadId));
+        tail.setIdx(segments.findMaxIdx(downloadId) + 1);
+        tail.setStartByte(splitAt);
+        tail.setEndByte(expectedEnd);
+        tail.setReceivedBytes(0);
+        tail.setStatus(SegmentStatus.PENDING);
+        return segments.save(tail);
     }
 
     @Transactional
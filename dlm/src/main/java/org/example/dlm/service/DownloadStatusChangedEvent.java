@@ -0,0 +1,12 @@
+package org.example.dlm.service;
+
+import org.example.dlm.domain.DownloadStatus;
+
+import java.util.UUID;
+
+public record DownloadStatusChangedEvent(
+        UUID downloadId,
+        Long userId,
+        DownloadStatus previous,
+        DownloadStatus status
+) {}
@@ -1,68 +1,202 @@
 package org.example.dlm.service;
 
-import java.io.InputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.service.io.ByteBufferBodyStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.time.Duration;
-
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+
+@Slf4j
+@Component
 public class HttpRangeClient {
 
-    public static final HttpClient CLIENT = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(15))
-            .followRedirects(HttpClient.Redirect.NORMAL)
-            .build();
+    public static final HttpResponse.BodyHandler<Flow.Publisher<List<ByteBuffer>>> PUBLISHER_HANDLER =
+            HttpResponse.BodyHandlers.ofPublisher();
+
+    private final long probeTtlMs;
+    private final int probeCacheMax;
+    private final long hostIdleMs;
 
-    public static final HttpResponse.BodyHandler<InputStream> STREAM_HANDLER =
-            HttpResponse.BodyHandlers.ofInputStream();
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final Map<URI, CachedProbe> probes = new ConcurrentHashMap<>();
+
+    public HttpRangeClient(@Value("${dlm.http.probe-ttl-ms:300000}") long probeTtlMs,
+                           @Value("${dlm.http.probe-cache-max:1024}") int probeCacheMax,
+                           @Value("${dlm.http.host-idle-ms:600000}") long hostIdleMs) {
+        this.probeTtlMs = probeTtlMs;
+        this.probeCacheMax = Math.max(1, probeCacheMax);
+        this.hostIdleMs = hostIdleMs;
+    }
 
-    public static HttpRequest buildRequest(URI uri, String rangeHeader) {
+    public static HttpRequest buildRequest(URI uri, String rangeHeader, String etag) {
         var builder = HttpRequest.newBuilder(uri)
                 .timeout(Duration.ofMinutes(5))
                 .GET();
         if (rangeHeader != null && !rangeHeader.isBlank()) {
             builder.header("Range", rangeHeader);
+            if (etag != null && !etag.startsWith("W/")) {
+                builder.header("If-Range", etag);
+            }
         }
         return builder.build();
     }
 
+    public HttpResponse<Flow.Publisher<List<ByteBuffer>>> send(HttpRequest req) throws IOException, InterruptedException {
+        Host host = host(req.uri());
+        var resp = host.client.send(req, PUBLISHER_HANDLER);
+        host.negotiated(resp.version());
+        return resp;
+    }
 
     public static final class ProbeResult {
         public final boolean rangeSupported;
         public final long contentLength;
+        public final String sha256;
+        public final String etag;
 
-        public ProbeResult(boolean rangeSupported, long contentLength) {
+        public ProbeResult(boolean rangeSupported, long contentLength, String sha256, String etag) {
             this.rangeSupported = rangeSupported;
             this.contentLength = contentLength;
+            this.sha256 = sha256;
+            this.etag = etag;
         }
     }
 
     public ProbeResult probe(URI uri) throws Exception {
+        long now = System.currentTimeMillis();
+        CachedProbe cached = probes.get(uri);
+        if (cached != null && cached.expiresAt > now) {
+            log.debug("[Http] probe cache hit {}", uri);
+            return cached.result;
+        }
+
+        ProbeResult result = probeRemote(uri);
+        if (probeTtlMs > 0) {
+            remember(uri, new CachedProbe(result, now + probeTtlMs), now);
+        }
+        return result;
+    }
+
+    int cachedProbes() {
+        return probes.size();
+    }
+
+    // length and ETag belong to the file, so probes stay keyed by URI; the size cap bounds the map instead
+    private void remember(URI uri, CachedProbe probe, long now) {
+        if (!probes.containsKey(uri) && probes.size() >= probeCacheMax) {
+            probes.values().removeIf(p -> p.expiresAt <= now);
+            while (probes.size() >= probeCacheMax) {
+                var oldest = probes.entrySet().stream()
+                        .min(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                        .orElse(null);
+                if (oldest == null) break;
+                probes.remove(oldest.getKey(), oldest.getValue());
+            }
+        }
+        probes.put(uri, probe);
+    }
+
+    public void invalidateProbe(URI uri) {
+        probes.remove(uri);
+    }
+
+    @Scheduled(fixedDelayString = "${dlm.http.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        probes.values().removeIf(p -> p.expiresAt <= now);
+        hosts.entrySet().removeIf(e -> {
+            boolean idle = now - e.getValue().lastUsedAt > hostIdleMs;
+            if (idle) {
+                log.debug("[Http] dropping idle client for {}", e.getKey());
+                // shutdown() does not wait for exchanges still streaming, unlike close()
+                e.getValue().client.shutdown();
+            }
+            return idle;
+        });
+    }
+
+    private ProbeResult probeRemote(URI uri) throws Exception {
         var req = HttpRequest.newBuilder(uri)
                 .timeout(Duration.ofSeconds(20))
                 .header("Range", "bytes=0-0")
                 .GET()
                 .build();
 
-        var resp = CLIENT.send(req, HttpResponse.BodyHandlers.discarding());
+        var resp = send(req);
+        try (var discard = new ByteBufferBodyStream()) {
+            resp.body().subscribe(discard);
+        }
 
+        HttpHeaders headers = resp.headers();
         if (resp.statusCode() == 206) {
-            long total = parseTotalFromContentRange(resp.headers().firstValue("Content-Range").orElse(null));
-            return new ProbeResult(true, total);
+            long total = parseTotalFromContentRange(headers.firstValue("Content-Range").orElse(null));
+            return new ProbeResult(true, total, digestOf(headers), etagOf(headers));
+        }
+        if (resp.statusCode() == 200) {
+            long len = headers.firstValue("Content-Length").map(HttpRangeClient::parseLongSafe).orElse(-1L);
+            return new ProbeResult(false, len, digestOf(headers), etagOf(headers));
         }
 
         var head = HttpRequest.newBuilder(uri)
                 .timeout(Duration.ofSeconds(20))
                 .method("HEAD", HttpRequest.BodyPublishers.noBody())
                 .build();
-        var headResp = CLIENT.send(head, HttpResponse.BodyHandlers.discarding());
+        Host host = host(uri);
+        var headResp = host.client.send(head, HttpResponse.BodyHandlers.discarding());
+        host.negotiated(headResp.version());
+
+        HttpHeaders h = headResp.headers();
+        boolean range = "bytes".equalsIgnoreCase(h.firstValue("Accept-Ranges").orElse(""));
+        long len = h.firstValue("Content-Length").map(HttpRangeClient::parseLongSafe).orElse(-1L);
+        return new ProbeResult(range, len, digestOf(h), etagOf(h));
+    }
+
+    private Host host(URI uri) {
+        Host host = hosts.computeIfAbsent(hostKey(uri), key -> new Host(key, newClient(uri)));
+        host.lastUsedAt = System.currentTimeMillis();
+        return host;
+    }
+
+    private static HttpClient newClient(URI uri) {
+        // h2 is negotiated through ALPN on TLS; cleartext stays on HTTP/1.1 to avoid the h2c upgrade dance
+        boolean tls = "https".equalsIgnoreCase(uri.getScheme());
+        return HttpClient.newBuilder()
+                .version(tls ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(15))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
 
-        boolean range = "bytes".equalsIgnoreCase(headResp.headers().firstValue("Accept-Ranges").orElse(""));
-        long len = headResp.headers().firstValue("Content-Length").map(HttpRangeClient::parseLongSafe).orElse(-1L);
-        return new ProbeResult(range, len);
+    private static String hostKey(URI uri) {
+        String scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        int port = uri.getPort() > 0 ? uri.getPort() : ("https".equals(scheme) ? 443 : 80);
+        return scheme + "://" + host + ":" + port;
     }
 
+    private static String digestOf(HttpHeaders headers) {
+        String repr = IntegrityVerifier.sha256FromDigestHeader(headers.firstValue("Repr-Digest").orElse(null));
+        return repr != null ? repr : IntegrityVerifier.sha256FromDigestHeader(headers.firstValue("Digest").orElse(null));
+    }
+
+    private static String etagOf(HttpHeaders headers) {
+        return headers.firstValue("ETag").filter(e -> !e.isBlank()).orElse(null);
+    }
 
     private static long parseTotalFromContentRange(String cr) {
         if (cr == null) return -1;
@@ -80,4 +214,25 @@ public class HttpRangeClient {
         }
     }
 
+    private record CachedProbe(ProbeResult result, long expiresAt) {
+    }
+
+    private static final class Host {
+        private final String key;
+        private final HttpClient client;
+        private volatile HttpClient.Version negotiated;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        private Host(String key, HttpClient client) {
+            this.key = key;
+            this.client = client;
+        }
+
+        private void negotiated(HttpClient.Version version) {
+            if (version != negotiated) {
+                negotiated = version;
+                log.info("[Http] {} negotiated {}", key, version);
+            }
+        }
+    }
 }
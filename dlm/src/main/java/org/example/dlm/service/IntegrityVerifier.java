@@ -0,0 +1,190 @@
+package org.example.dlm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.service.io.SegmentDigest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Slf4j
+@Component
+public class IntegrityVerifier {
+
+    private static final int READ_CHUNK = 1024 * 1024;
+
+    private static final Pattern HEX_SHA256 = Pattern.compile("[0-9a-fA-F]{64}");
+    private static final Pattern DIGEST_SHA256 = Pattern.compile("sha-256=:?([A-Za-z0-9+/=]+):?", Pattern.CASE_INSENSITIVE);
+
+    private final boolean segmentHashing;
+
+    public IntegrityVerifier(@Value("${dlm.integrity.segment-hash:true}") boolean segmentHashing) {
+        this.segmentHashing = segmentHashing;
+    }
+
+    public enum Outcome { OK, REFETCH, MISMATCH }
+
+    public record Result(Outcome outcome, List<Long> segmentIds, String detail) {
+        static Result ok() {
+            return new Result(Outcome.OK, List.of(), null);
+        }
+    }
+
+    public static String normalizeSha256(String value) {
+        if (value == null || value.isBlank()) return null;
+        String hex = value.trim();
+        if (!HEX_SHA256.matcher(hex).matches()) {
+            throw new IllegalArgumentException("SHA-256 має містити 64 шістнадцяткові символи");
+        }
+        return hex.toLowerCase(Locale.ROOT);
+    }
+
+    public static String sha256FromDigestHeader(String header) {
+        if (header == null) return null;
+        Matcher m = DIGEST_SHA256.matcher(header);
+        if (!m.find()) return null;
+        try {
+            byte[] raw = Base64.getDecoder().decode(m.group(1));
+            return raw.length == 32 ? HexFormat.of().formatHex(raw) : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    public boolean hashesSegments(Download d) {
+        return segmentHashing && d.getExpectedSha256() != null;
+    }
+
+    public boolean needsReadPass(Download d, List<Segment> segs) {
+        return d.getExpectedSha256() != null && wholeFileDigest(d, segs) == null;
+    }
+
+    public Result verify(Download d, List<Segment> segs, Path path) throws IOException {
+        List<Long> shortSegments = new ArrayList<>();
+        for (Segment s : segs) {
+            long length = s.getEndByte() - s.getStartByte() + 1;
+            if (s.getEndByte() >= s.getStartByte() && s.getReceivedBytes() < length) {
+                shortSegments.add(s.getId());
+            }
+        }
+        if (!shortSegments.isEmpty()) {
+            return new Result(Outcome.REFETCH, shortSegments, shortSegments.size() + " segments are short");
+        }
+
+        if (d.getTotalBytes() > 0 && Files.size(path) < d.getTotalBytes()) {
+            return new Result(Outcome.MISMATCH, List.of(),
+                    "file has " + Files.size(path) + " bytes, expected " + d.getTotalBytes());
+        }
+
+        String expected = d.getExpectedSha256();
+        if (expected == null) {
+            return Result.ok();
+        }
+
+        String whole = wholeFileDigest(d, segs);
+        if (whole != null) {
+            return whole.equalsIgnoreCase(expected)
+                    ? Result.ok()
+                    : new Result(Outcome.MISMATCH, List.of(), "sha256 " + whole + " != " + expected);
+        }
+
+        return readPass(d, segs, path, expected);
+    }
+
+    private Result readPass(Download d, List<Segment> segs, Path path, String expected) throws IOException {
+        List<Segment> ordered = new ArrayList<>(segs);
+        ordered.sort(Comparator.comparingLong(Segment::getStartByte));
+
+        SegmentDigest file = SegmentDigest.sha256();
+        List<Long> diverged = new ArrayList<>();
+
+        long started = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = d.getTotalBytes() > 0 ? d.getTotalBytes() : channel.size();
+            ByteBuffer buf = ByteBuffer.allocateDirect(READ_CHUNK);
+
+            int next = 0;
+            Segment current = null;
+            SegmentDigest segment = null;
+            long position = 0;
+
+            while (position < size) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), size - position));
+                int read = channel.read(buf, position);
+                if (read < 0) break;
+                buf.flip();
+
+                while (buf.hasRemaining()) {
+                    if (current == null && next < ordered.size() && ordered.get(next).getStartByte() <= position) {
+                        current = ordered.get(next++);
+                        segment = current.getSha256() != null ? SegmentDigest.sha256() : null;
+                    }
+
+                    long until = current != null ? endOf(current, size) + 1 : nextStart(ordered, next, size);
+                    int take = (int) Math.min(buf.remaining(), Math.max(1, until - position));
+
+                    ByteBuffer slice = buf.slice(buf.position(), take);
+                    file.update(slice.duplicate());
+                    if (segment != null) {
+                        segment.update(slice);
+                    }
+                    buf.position(buf.position() + take);
+                    position += take;
+
+                    if (current != null && position > endOf(current, size)) {
+                        if (segment != null && !segment.hex().equalsIgnoreCase(current.getSha256())) {
+                            diverged.add(current.getId());
+                        }
+                        current = null;
+                        segment = null;
+                    }
+                }
+            }
+        }
+
+        String actual = file.hex();
+        log.info("[Integrity] download {} read pass took {} ms, sha256={}",
+                d.getId(), System.currentTimeMillis() - started, actual);
+
+        if (actual.equalsIgnoreCase(expected)) {
+            return Result.ok();
+        }
+        if (!diverged.isEmpty()) {
+            return new Result(Outcome.REFETCH, diverged,
+                    diverged.size() + " segments differ on disk from what was received");
+        }
+        return new Result(Outcome.MISMATCH, List.of(), "sha256 " + actual + " != " + expected);
+    }
+
+    private long endOf(Segment s, long size) {
+        return s.getEndByte() >= s.getStartByte() ? s.getEndByte() : size - 1;
+    }
+
+    private long nextStart(List<Segment> ordered, int next, long size) {
+        return next < ordered.size() ? ordered.get(next).getStartByte() : size;
+    }
+
+    private String wholeFileDigest(Download d, List<Segment> segs) {
+        if (segs.size() != 1) return null;
+        Segment s = segs.get(0);
+        if (s.getSha256() == null || s.getStartByte() != 0) return null;
+        if (d.getTotalBytes() > 0 && s.getReceivedBytes() != d.getTotalBytes()) return null;
+        return s.getSha256();
+    }
+}
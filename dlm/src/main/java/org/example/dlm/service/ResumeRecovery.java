@@ -0,0 +1,100 @@
+package org.example.dlm.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+import org.example.dlm.repo.DownloadRepo;
+import org.example.dlm.repo.SegmentRepo;
+import org.example.dlm.service.io.ResumeJournal;
+import org.example.dlm.service.progress.ProgressCheckpointer;
+import org.example.dlm.service.progress.SegmentProgressLedger;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResumeRecovery {
+
+    private final DownloadRepo downloads;
+    private final SegmentRepo segments;
+    private final DownloadService downloadService;
+    private final SegmentProgressLedger progressLedger;
+    private final ProgressCheckpointer checkpointer;
+
+    public void recover() {
+        long started = System.currentTimeMillis();
+        List<UUID> interrupted = segments.findDownloadIdsBySegmentStatus(SegmentStatus.RUNNING);
+        if (interrupted.isEmpty()) {
+            return;
+        }
+
+        // no segment task survives a restart, so every RUNNING row is an orphan; receivedBytes is kept
+        int requeued = segments.requeueRunning();
+        log.info("[Recovery] requeued {} orphaned RUNNING segments of {} downloads",
+                requeued, interrupted.size());
+
+        int adjusted = 0;
+        for (UUID downloadId : interrupted) {
+            try {
+                adjusted += recover(downloadId);
+            } catch (Exception ex) {
+                log.warn("[Recovery] download {} could not be reconciled: {}", downloadId, ex.toString());
+            }
+        }
+        log.info("[Recovery] reconciled {} interrupted downloads in {} ms, {} segment offsets moved to durable values",
+                interrupted.size(), System.currentTimeMillis() - started, adjusted);
+    }
+
+    private int recover(UUID downloadId) throws IOException {
+        Download d = downloads.findById(downloadId).orElse(null);
+        if (d == null) {
+            return 0;
+        }
+
+        Path file = downloadService.pathFor(d);
+        long fileLength = Files.exists(file) ? Files.size(file) : 0;
+        Path journalPath = ResumeJournal.pathFor(file);
+        Map<Long, ResumeJournal.Entry> journal = checkpointer.isEnabled() && Files.exists(journalPath)
+                ? ResumeJournal.read(journalPath)
+                : null;
+
+        int adjusted = 0;
+        long rolledBack = 0;
+        for (Segment s : segments.findByDownload_Id(downloadId)) {
+            if (s.getStatus() == SegmentStatus.DONE) continue;
+
+            long offset = durableOffset(s, journal, fileLength);
+            if (offset == s.getReceivedBytes()) continue;
+
+            segments.updateProgress(s.getId(), offset, s.getStatus());
+            rolledBack += Math.max(0, s.getReceivedBytes() - offset);
+            adjusted++;
+        }
+        progressLedger.touch(downloadId);
+
+        log.debug("[Recovery] download {}: {} segment offsets adjusted against {} (file {} bytes), {} bytes were not durable",
+                downloadId, adjusted, journal != null ? "journal" : "database", fileLength, rolledBack);
+        return adjusted;
+    }
+
+    static long durableOffset(Segment s, Map<Long, ResumeJournal.Entry> journal, long fileLength) {
+        long offset = s.getReceivedBytes();
+        if (journal != null) {
+            // the journal may only lower an offset: a segment reset for re-fetch keeps its stale entry
+            ResumeJournal.Entry e = journal.get(s.getId());
+            offset = e != null && e.startByte() == s.getStartByte() ? Math.min(offset, e.receivedBytes()) : 0;
+        }
+        long length = s.getEndByte() >= s.getStartByte() ? s.getEndByte() - s.getStartByte() + 1 : Long.MAX_VALUE;
+        long onDisk = Math.max(0, fileLength - s.getStartByte());
+        return Math.max(0, Math.min(offset, Math.min(length, onDisk)));
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.dlm.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+@Slf4j
+@Component
+public class RetryPolicy {
+
+    private static final long WAIT_SLICE_MS = 200L;
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    @Getter
+    @Value("${dlm.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${dlm.retry.base-delay-ms:500}")
+    private long baseDelayMs;
+
+    @Value("${dlm.retry.max-delay-ms:30000}")
+    private long maxDelayMs;
+
+    @Value("${dlm.retry.breaker-threshold:5}")
+    private int breakerThreshold;
+
+    @Value("${dlm.retry.breaker-open-ms:30000}")
+    private long breakerOpenMs;
+
+    public boolean isRetryable(Exception ex) {
+        if (ex instanceof SegmentFetchException f) {
+            return f.isRetryable();
+        }
+        return ex instanceof IOException;
+    }
+
+    public long delayMs(String host, int attempt, Exception ex) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        long half = ceiling / 2;
+        long delay = half + ThreadLocalRandom.current().nextLong(half + 1);
+        if (ex instanceof SegmentFetchException f && f.getRetryAfterMs() > 0) {
+            delay = Math.max(delay, Math.min(f.getRetryAfterMs(), maxDelayMs));
+        }
+        return Math.max(delay, openRemainingMs(host));
+    }
+
+    public boolean await(long delayMs, BooleanSupplier stillWanted) throws InterruptedException {
+        long until = System.currentTimeMillis() + delayMs;
+        long left;
+        while ((left = until - System.currentTimeMillis()) > 0) {
+            if (!stillWanted.getAsBoolean()) {
+                return false;
+            }
+            Thread.sleep(Math.min(left, WAIT_SLICE_MS));
+        }
+        return stillWanted.getAsBoolean();
+    }
+
+    public boolean awaitHost(String host, BooleanSupplier stillWanted) throws InterruptedException {
+        long open = openRemainingMs(host);
+        return open <= 0 || await(open, stillWanted);
+    }
+
+    public void onSuccess(String host) {
+        if (host != null) {
+            breakers.remove(key(host));
+        }
+    }
+
+    public void onFailure(String host) {
+        if (host == null || breakerThreshold <= 0) {
+            return;
+        }
+        Breaker b = breakers.computeIfAbsent(key(host), h -> new Breaker());
+        synchronized (b) {
+            b.failures++;
+            if (b.failures >= breakerThreshold) {
+                long now = System.currentTimeMillis();
+                if (b.openUntil <= now) {
+                    log.warn("[Retry] host {} failed {} times in a row, holding requests for {} ms",
+                            host, b.failures, breakerOpenMs);
+                }
+                b.openUntil = Math.max(b.openUntil, now + breakerOpenMs);
+                b.failures = breakerThreshold - 1;
+            }
+        }
+    }
+
+    private long openRemainingMs(String host) {
+        if (host == null) return 0;
+        Breaker b = breakers.get(key(host));
+        return b == null ? 0 : Math.max(0, b.openUntil - System.currentTimeMillis());
+    }
+
+    private static String key(String host) {
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Breaker {
+        private int failures;
+        private volatile long openUntil;
+    }
+}
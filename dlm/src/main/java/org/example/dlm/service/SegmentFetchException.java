@@ -0,0 +1,23 @@
+package org.example.dlm.service;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+@Getter
+public class SegmentFetchException extends IOException {
+
+    private final boolean retryable;
+    private final long retryAfterMs;
+
+    public SegmentFetchException(String message, boolean retryable, long retryAfterMs) {
+        super(message);
+        this.retryable = retryable;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public static SegmentFetchException forStatus(int code, String rangeHeader, long retryAfterMs) {
+        boolean retryable = code >= 500 || code == 408 || code == 429;
+        return new SegmentFetchException("HTTP " + code + " for range '" + rangeHeader + "'", retryable, retryAfterMs);
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.dlm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.service.progress.SegmentProgress;
+import org.example.dlm.service.progress.SegmentProgressLedger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+@Slf4j
+@Component
+public class SegmentSplitter {
+
+    private final SegmentProgressLedger progressLedger;
+    private final DownloadService downloadService;
+    private final long minSplitBytes;
+
+    public SegmentSplitter(SegmentProgressLedger progressLedger,
+                           DownloadService downloadService,
+                           @Value("${dlm.segments.min-split-bytes:1048576}") long minSplitBytes) {
+        this.progressLedger = progressLedger;
+        this.downloadService = downloadService;
+        this.minSplitBytes = Math.max(1, minSplitBytes);
+    }
+
+    public Segment splitLargest(UUID downloadId) {
+        SegmentProgress victim = progressLedger.active(downloadId).stream()
+                .max(Comparator.comparingLong(SegmentProgress::remainingBytes))
+                .orElse(null);
+        if (victim == null) {
+            return null;
+        }
+
+        long remaining = victim.remainingBytes();
+        if (remaining < 2 * minSplitBytes) {
+            return null;
+        }
+
+        long oldEnd = victim.getEndByte();
+        long splitAt = victim.getStartByte() + victim.getReceivedBytes() + remaining / 2;
+
+        // the running writer checks this end before every chunk, so it must stop before the tail row exists
+        if (!victim.shrinkEnd(oldEnd, splitAt - 1)) {
+            return null;
+        }
+        Segment tail = null;
+        try {
+            tail = downloadService.splitSegment(downloadId, victim.getSegmentId(), oldEnd, splitAt);
+        } finally {
+            if (tail == null) {
+                victim.restoreEnd(splitAt - 1, oldEnd);
+            }
+        }
+        if (tail == null) {
+            return null;
+        }
+
+        log.info("[Engine] split segment {} of {} at {}: new segId={} idx={} [{}, {}]",
+                victim.getSegmentId(), downloadId, splitAt,
+                tail.getId(), tail.getIdx(), tail.getStartByte(), tail.getEndByte());
+        return tail;
+    }
+}
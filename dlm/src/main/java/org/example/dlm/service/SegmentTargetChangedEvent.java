@@ -0,0 +1,8 @@
+package org.example.dlm.service;
+
+import java.util.UUID;
+
+public record SegmentTargetChangedEvent(
+        UUID downloadId,
+        int target
+) {}
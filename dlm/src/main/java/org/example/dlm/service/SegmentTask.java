@@ -8,14 +8,26 @@ import org.example.dlm.domain.Segment;
 import org.example.dlm.domain.SegmentStatus;
 import org.example.dlm.repo.DownloadRepo;
 import org.example.dlm.repo.SegmentRepo;
+import org.example.dlm.repo.StatsRepo;
+import org.example.dlm.service.io.ByteBufferBodyStream;
+import org.example.dlm.service.io.FileChannelRegistry;
+import org.example.dlm.service.io.SegmentDigest;
+import org.example.dlm.service.io.SegmentWriter;
+import org.example.dlm.service.metrics.EngineMetrics;
+import org.example.dlm.service.progress.ProgressCheckpointer;
+import org.example.dlm.service.progress.ProgressFlusher;
+import org.example.dlm.service.progress.SegmentProgress;
+import org.example.dlm.service.progress.SegmentProgressLedger;
 import org.example.dlm.service.stats.SpeedMeter;
 
-import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.io.IOException;
 import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.time.Instant;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -25,317 +37,414 @@ public class SegmentTask implements Runnable {
 
     private final SegmentRepo segments;
     private final DownloadRepo downloads;
+    private final StatsRepo stats;
 
     private final Download download;
     private final Segment segment;
+    private final DownloadControl control;
     private final Path filePath;
     private final boolean rangeSupported;
 
-    private final long globalSpeedLimitBps;
-    private final int segmentsPerDownload;
+    private final BandwidthLimiter bandwidth;
 
     private final SpeedMeter speedMeter;
+    private final EngineMetrics metrics;
 
-    private long windowStartMs = 0L;
-    private long bytesInWindow = 0L;
+    private final SegmentProgressLedger progressLedger;
+    private final ProgressFlusher progressFlusher;
+    private final ProgressCheckpointer checkpointer;
+
+    private final Consumer<UUID> onFinished;
+    private final Consumer<UUID> onFailed;
+
+    private final ConnectionLimiter connectionLimiter;
+    private final RetryPolicy retryPolicy;
+    private final FileChannelRegistry fileChannels;
+    private final AdaptiveSegmentController adaptiveSegments;
+    private final boolean hashSegments;
+
+    private SegmentProgress progress;
+    private ConnectionLimiter.Permit permit;
 
     @Override
     public void run() {
         try {
-            Optional<Segment> segOpt = segments.findById(segment.getId());
-            if (segOpt.isEmpty()) {
-                log.warn("[SegmentTask] segment {} not found in DB, abort", segment.getId());
-                return;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    fetch();
+                    return;
+                } catch (Exception ex) {
+                    releasePermit();
+                    if (!shouldRetry(ex, attempt)) {
+                        handleError(ex);
+                        return;
+                    }
+                    if (!backOff(ex, attempt)) {
+                        stopWhileBackingOff();
+                        return;
+                    }
+                } finally {
+                    releasePermit();
+                }
             }
-            Segment currentSeg = segOpt.get();
-
-            Optional<Download> dOpt = downloads.findById(download.getId());
-            if (dOpt.isEmpty()) {
-                log.warn("[SegmentTask] download {} not found in DB, abort", download.getId());
-                return;
+        } finally {
+            progressLedger.forget(segment.getId());
+            if (onFinished != null) {
+                onFinished.accept(download.getId());
             }
-            if (dOpt.get().getStatus() != DownloadStatus.RUNNING) {
-                log.info("[SegmentTask] download {} is {}, skip segment {}",
-                        download.getId(), dOpt.get().getStatus(), segment.getId());
-                return;
-            }
-
-            long startByte = currentSeg.getStartByte();
-            long endByte = currentSeg.getEndByte();
-
-            long baseReceived = Math.max(0, currentSeg.getReceivedBytes());
-            long segLength = (endByte >= startByte && endByte >= 0)
-                    ? (endByte - startByte + 1)
-                    : -1;
+        }
+    }
 
-            log.info("[SegmentTask] START download={} segId={} idx={} start={} end={} baseReceived={} len={} rangeSupported={} limit={}B/s segs={}",
-                    download.getId(), currentSeg.getId(), currentSeg.getIdx(),
-                    startByte, endByte, baseReceived, segLength, rangeSupported,
-                    globalSpeedLimitBps, segmentsPerDownload);
+    private void fetch() throws Exception {
+        Optional<Segment> segOpt = segments.findById(segment.getId());
+        if (segOpt.isEmpty()) {
+            log.warn("[SegmentTask] segment {} not found in DB, abort", segment.getId());
+            return;
+        }
+        Segment currentSeg = segOpt.get();
 
-            if (segLength > 0 && baseReceived >= segLength) {
-                log.info("[SegmentTask] segment {} already fully downloaded ({} of {}), mark DONE",
-                        currentSeg.getId(), baseReceived, segLength);
-                currentSeg.setStatus(SegmentStatus.DONE);
+        Optional<Download> dOpt = downloads.findById(download.getId());
+        if (dOpt.isEmpty()) {
+            log.warn("[SegmentTask] download {} not found in DB, abort", download.getId());
+            return;
+        }
+        if (dOpt.get().getStatus() != DownloadStatus.RUNNING || !control.isRunning()) {
+            log.info("[SegmentTask] download {} is {}, skip segment {}",
+                    download.getId(), dOpt.get().getStatus(), segment.getId());
+            if (currentSeg.getStatus() == SegmentStatus.RUNNING) {
+                currentSeg.setStatus(SegmentStatus.PENDING);
                 segments.save(currentSeg);
-                recalcDownloadReceived();
-                return;
             }
+            return;
+        }
 
-            currentSeg.setStatus(SegmentStatus.RUNNING);
+        long startByte = currentSeg.getStartByte();
+        long endByte = currentSeg.getEndByte();
+
+        long baseReceived = Math.max(0, currentSeg.getReceivedBytes());
+        long segLength = (endByte >= startByte && endByte >= 0)
+                ? (endByte - startByte + 1)
+                : -1;
+
+        log.debug("[SegmentTask] START download={} segId={} idx={} start={} end={} baseReceived={} len={} rangeSupported={}",
+                download.getId(), currentSeg.getId(), currentSeg.getIdx(),
+                startByte, endByte, baseReceived, segLength, rangeSupported);
+
+        if (segLength > 0 && baseReceived >= segLength) {
+            log.info("[SegmentTask] segment {} already fully downloaded ({} of {}), mark DONE",
+                    currentSeg.getId(), baseReceived, segLength);
+            currentSeg.setStatus(SegmentStatus.DONE);
             segments.save(currentSeg);
+            progressLedger.touch(download.getId());
+            return;
+        }
 
-            long effectiveStart = startByte + baseReceived;
+        currentSeg.setStatus(SegmentStatus.RUNNING);
+        segments.save(currentSeg);
 
-            URI uri = URI.create(download.getUrl());
-            String rangeHeader;
-            long seekTo;
+        progress = progressLedger.track(currentSeg.getId(), download.getId(),
+                startByte, endByte, baseReceived);
 
-            if (rangeSupported) {
-                if (endByte >= 0 && endByte >= effectiveStart) {
-                    rangeHeader = "bytes=" + effectiveStart + "-" + endByte;
-                } else {
-                    rangeHeader = "bytes=" + effectiveStart + "-";
-                }
-                seekTo = effectiveStart;
+        long effectiveStart = startByte + baseReceived;
+
+        URI uri = URI.create(download.getUrl());
+        String rangeHeader;
+        long seekTo;
+
+        if (rangeSupported) {
+            if (endByte >= 0 && endByte >= effectiveStart) {
+                rangeHeader = "bytes=" + effectiveStart + "-" + endByte;
             } else {
-                if (effectiveStart > 0) {
-                    log.warn("[SegmentTask] server has no Range, but effectiveStart={} > 0; restarting from segment start", effectiveStart);
-                    baseReceived = 0;
-                    effectiveStart = startByte;
-                }
-                rangeHeader = null;
-                seekTo = effectiveStart;
+                rangeHeader = "bytes=" + effectiveStart + "-";
             }
+            seekTo = effectiveStart;
+        } else {
+            if (effectiveStart > 0) {
+                log.warn("[SegmentTask] server has no Range, but effectiveStart={} > 0; restarting from segment start", effectiveStart);
+                baseReceived = 0;
+                effectiveStart = startByte;
+            }
+            rangeHeader = null;
+            seekTo = effectiveStart;
+        }
 
-            log.info("[SegmentTask] HTTP request download={} segId={} rangeHeader='{}' seekTo={}",
-                    download.getId(), currentSeg.getId(), rangeHeader, seekTo);
+        Long ownerId = download.getOwner().getId();
+        permit = retryPolicy.awaitHost(uri.getHost(), control::isRunning)
+                ? connectionLimiter.acquire(uri.getHost(), ownerId, control::isRunning)
+                : null;
+        if (permit == null) {
+            if (control.state() == DownloadControl.State.CANCELING) {
+                handleCancel(baseReceived, 0);
+            } else {
+                handlePause(baseReceived, 0);
+            }
+            return;
+        }
 
-            var req = HttpRangeClient.buildRequest(uri, rangeHeader);
-            var resp = HttpRangeClient.CLIENT.send(req, HttpRangeClient.STREAM_HANDLER);
+        log.debug("[SegmentTask] HTTP request download={} segId={} rangeHeader='{}' seekTo={}",
+                download.getId(), currentSeg.getId(), rangeHeader, seekTo);
+
+        EngineMetrics.Transfer transfer = metrics.transfer(uri.getHost(), ownerId);
+        long requestedAt = System.nanoTime();
+        var req = HttpRangeClient.buildRequest(uri, rangeHeader, download.getEtag());
+        var resp = http.send(req);
+
+        int code = resp.statusCode();
+        long contentLength = resp.headers()
+                .firstValue("Content-Length")
+                .map(s -> {
+                    try {
+                        return Long.parseLong(s.trim());
+                    } catch (Exception e) {
+                        return -1L;
+                    }
+                }).orElse(-1L);
 
-            int code = resp.statusCode();
-            long contentLength = resp.headers()
-                    .firstValue("Content-Length")
-                    .map(s -> {
-                        try {
-                            return Long.parseLong(s.trim());
-                        } catch (Exception e) {
-                            return -1L;
-                        }
-                    }).orElse(-1L);
+        log.debug("[SegmentTask] HTTP response download={} segId={} status={} contentLength={}",
+                download.getId(), currentSeg.getId(), code, contentLength);
 
-            log.info("[SegmentTask] HTTP response download={} segId={} status={} contentLength={}",
-                    download.getId(), currentSeg.getId(), code, contentLength);
+        String etag = resp.headers().firstValue("ETag").orElse(null);
+        if (download.getEtag() != null && etag != null && !download.getEtag().equals(etag)) {
+            try (var discard = new ByteBufferBodyStream()) {
+                resp.body().subscribe(discard);
+            }
+            http.invalidateProbe(uri);
+            throw new SegmentFetchException("file changed on server: ETag " + etag
+                    + " != " + download.getEtag(), false, 0);
+        }
 
-            try (InputStream in = resp.body();
-                 RandomAccessFile raf = new RandomAccessFile(filePath.toFile(), "rw")) {
+        boolean rangeRejected = code == 416 || code == 429 || code == 503
+                || (rangeHeader != null && effectiveStart > 0 && code == 200);
+        if (rangeRejected || code >= 400) {
+            try (var discard = new ByteBufferBodyStream()) {
+                resp.body().subscribe(discard);
+            }
+            if (rangeRejected && adaptiveSegments.onRangeRejected(download.getId())) {
+                handlePause(baseReceived, 0);
+                return;
+            }
+            throw SegmentFetchException.forStatus(code, rangeHeader, retryAfterMs(resp.headers()));
+        }
+        retryPolicy.onSuccess(uri.getHost());
 
-                if (seekTo > 0) {
-                    raf.seek(seekTo);
-                }
+        SegmentDigest digest = null;
+        if (hashSegments) {
+            digest = SegmentDigest.sha256();
+            if (seekTo > startByte) {
+                fileChannels.digest(download.getId(), filePath, startByte, seekTo - startByte, digest);
+            }
+        }
 
-                byte[] buf = new byte[64 * 1024];
-                int read;
+        long receivedThisRun = 0L;
 
-                long lastUpdate = System.currentTimeMillis();
-                long lastStatusCheck = lastUpdate;
-                long lastLog = lastUpdate;
-                long receivedThisRun = 0L;
+        try (var active = metrics.activeSegment();
+             SegmentWriter writer = fileChannels.openWriter(download.getId(), filePath,
+                     seekTo, endByte, download.getTotalBytes());
+             var body = new ByteBufferBodyStream()) {
+            resp.body().subscribe(body);
 
-                windowStartMs = System.currentTimeMillis();
-                bytesInWindow = 0L;
+            long position = seekTo;
+            ByteBuffer buf;
+            boolean firstByte = true;
 
-                while ((read = in.read(buf)) != -1) {
+            long lastLog = System.currentTimeMillis();
 
-                    if (Thread.currentThread().isInterrupted()) {
-                        log.info("[SegmentTask] interrupted download={} segId={}, treat as CANCEL",
-                                download.getId(), segment.getId());
-                        handleCancel(baseReceived, receivedThisRun);
-                        return;
-                    }
+            while ((buf = body.next()) != null) {
 
-                    long now = System.currentTimeMillis();
-
-                    if (now - lastStatusCheck >= 500) {
-                        Optional<Download> curDownloadOpt = downloads.findById(download.getId());
-                        if (curDownloadOpt.isPresent()) {
-                            Download curDownload = curDownloadOpt.get();
-                            DownloadStatus st = curDownload.getStatus();
-                            if (st == DownloadStatus.PAUSED) {
-                                log.info("[SegmentTask] PAUSE requested for download={}, segId={}",
-                                        download.getId(), currentSeg.getId());
-                                handlePause(baseReceived, receivedThisRun);
-                                return;
-                            } else if (st == DownloadStatus.CANCELED) {
-                                log.info("[SegmentTask] CANCEL requested for download={}, segId={}",
-                                        download.getId(), currentSeg.getId());
-                                handleCancel(baseReceived, receivedThisRun);
-                                return;
-                            }
-                        } else {
-                            log.info("[SegmentTask] download {} already deleted, stop segId={}",
-                                    download.getId(), currentSeg.getId());
-                            return;
-                        }
-                        lastStatusCheck = now;
-                    }
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("[SegmentTask] interrupted download={} segId={}, treat as CANCEL",
+                            download.getId(), segment.getId());
+                    handleCancel(baseReceived, receivedThisRun);
+                    return;
+                }
 
-                    raf.write(buf, 0, read);
-                    receivedThisRun += read;
+                DownloadControl.State st = control.state();
+                if (st == DownloadControl.State.PAUSING) {
+                    log.info("[SegmentTask] PAUSE requested for download={}, segId={}",
+                            download.getId(), currentSeg.getId());
+                    handlePause(baseReceived, receivedThisRun);
+                    return;
+                } else if (st == DownloadControl.State.CANCELING) {
+                    log.info("[SegmentTask] CANCEL requested for download={}, segId={}",
+                            download.getId(), currentSeg.getId());
+                    handleCancel(baseReceived, receivedThisRun);
+                    return;
+                }
 
-                    if (read > 0 && speedMeter != null) {
-                        speedMeter.onBytesDownloaded(download.getId(), read);
-                    }
+                long now = System.currentTimeMillis();
 
-                    if (now - lastUpdate >= 300) {
-                        updateSegmentAndDownloadProgress(baseReceived, receivedThisRun);
-                        lastUpdate = now;
-                    }
+                long allowed = progress.writableFrom(position, buf.remaining());
+                if (allowed <= 0) {
+                    log.info("[SegmentTask] segment {} reached its end {} after split",
+                            currentSeg.getId(), progress.getEndByte());
+                    break;
+                }
+                if (buf.remaining() > allowed) {
+                    buf.limit(buf.position() + (int) allowed);
+                }
 
-                    if (globalSpeedLimitBps > 0) {
-                        applySpeedLimit(read);
-                    }
+                int mark = buf.position();
+                int read = buf.remaining();
+                position += writer.write(buf, position);
+                receivedThisRun += read;
 
-                    if (now - lastLog >= 2000) {
-                        log.info("[SegmentTask] streaming download={} segId={} totalForSegment={} (base={} + run={})",
-                                download.getId(), currentSeg.getId(),
-                                baseReceived + receivedThisRun, baseReceived, receivedThisRun);
-                        lastLog = now;
-                    }
+                if (firstByte) {
+                    transfer.firstByte(requestedAt);
+                    firstByte = false;
                 }
+                transfer.received(read);
 
-                updateSegmentAndDownloadProgress(baseReceived, receivedThisRun);
-                log.info("[SegmentTask] FINISH read stream download={} segId={} totalForSegment={}",
-                        download.getId(), currentSeg.getId(), baseReceived + receivedThisRun);
-            }
+                if (digest != null) {
+                    buf.position(mark);
+                    digest.update(buf);
+                }
 
-            downloads.findById(download.getId()).ifPresent(d -> {
-                if (d.getStatus() == DownloadStatus.RUNNING) {
-                    segments.findById(segment.getId()).ifPresent(s -> {
-                        s.setStatus(SegmentStatus.DONE);
-                        segments.save(s);
-                        log.info("[SegmentTask] segment DONE download={} segId={}",
-                                download.getId(), s.getId());
-                    });
-                    recalcDownloadReceived();
-                } else {
-                    log.info("[SegmentTask] download {} is {} after stream, not marking DONE for segment {}",
-                            d.getId(), d.getStatus(), segment.getId());
+                if (read > 0 && speedMeter != null) {
+                    speedMeter.onBytesDownloaded(download.getId(), read);
                 }
-            });
 
-        } catch (Exception ex) {
-            handleError(ex);
-        }
-    }
+                progressLedger.update(progress, baseReceived + receivedThisRun);
 
-    private void applySpeedLimit(int justReadBytes) {
-        if (globalSpeedLimitBps <= 0) return;
+                try {
+                    bandwidth.acquire(ownerId, download.getId(), read, control::isRunning);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
 
-        long perSegmentLimit = Math.max(1L,
-                globalSpeedLimitBps / Math.max(1, segmentsPerDownload));
+                if (now - lastLog >= 2000) {
+                    log.debug("[SegmentTask] streaming download={} segId={} totalForSegment={} (base={} + run={})",
+                            download.getId(), currentSeg.getId(),
+                            baseReceived + receivedThisRun, baseReceived, receivedThisRun);
+                    lastLog = now;
+                }
+            }
 
-        long now = System.currentTimeMillis();
-        if (windowStartMs == 0L) {
-            windowStartMs = now;
+            progressLedger.update(progress, baseReceived + receivedThisRun);
+            log.debug("[SegmentTask] FINISH read stream download={} segId={} totalForSegment={}",
+                    download.getId(), currentSeg.getId(), baseReceived + receivedThisRun);
         }
 
-        bytesInWindow += justReadBytes;
-        long elapsed = now - windowStartMs;
-        if (elapsed <= 0) {
+        if (control.state() == DownloadControl.State.CANCELING) {
+            log.info("[SegmentTask] download {} canceled after stream, not marking DONE for segment {}",
+                    download.getId(), segment.getId());
+            handleCancel(0, 0);
             return;
         }
 
-        long allowed = perSegmentLimit * elapsed / 1000L;
-
-        if (bytesInWindow > allowed) {
-            long extra = bytesInWindow - allowed;
-            long sleepMs = (extra * 1000L) / perSegmentLimit;
-            if (sleepMs > 0) {
-                try {
-                    Thread.sleep(sleepMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    handleCancel(0, 0); // прогрес уже збережений вище
-                }
+        long finalEnd = progress.getEndByte();
+        long expectedLength = finalEnd >= startByte ? finalEnd - startByte + 1 : -1;
+        if (expectedLength > 0 && progress.getReceivedBytes() < expectedLength) {
+            if (!rangeSupported || receivedThisRun == 0) {
+                throw new IOException("segment " + segment.getId() + " ended after "
+                        + progress.getReceivedBytes() + " of " + expectedLength + " bytes");
             }
+            log.warn("[SegmentTask] segment {} of {} is short ({} of {} bytes), re-fetching the missing tail",
+                    segment.getId(), download.getId(), progress.getReceivedBytes(), expectedLength);
+            handlePause(progress.getReceivedBytes(), 0);
+            return;
         }
 
-        if (elapsed >= 1000L) {
-            windowStartMs = now;
-            bytesInWindow = 0L;
+        progressFlusher.flushDownload(download.getId());
+        checkpointer.checkpoint(download.getId());
+
+        if (digest != null && digest.hashedBytes() == progress.getReceivedBytes()) {
+            segments.updateDigest(segment.getId(), digest.hex());
         }
+        segments.updateProgress(segment.getId(), progress.getReceivedBytes(), SegmentStatus.DONE);
+        log.debug("[SegmentTask] segment DONE download={} segId={}",
+                download.getId(), segment.getId());
     }
 
-    private void updateSegmentAndDownloadProgress(long baseReceived, long receivedThisRun) {
-        long totalForSegment = Math.max(0, baseReceived + receivedThisRun);
-
-        segments.findById(segment.getId()).ifPresent(s -> {
-            s.setReceivedBytes(totalForSegment);
-            s.setStatus(SegmentStatus.RUNNING);
-            segments.save(s);
-        });
-
-        recalcDownloadReceived();
+    private boolean shouldRetry(Exception ex, int attempt) {
+        if (progress == null || !retryPolicy.isRetryable(ex)) {
+            return false;
+        }
+        retryPolicy.onFailure(URI.create(download.getUrl()).getHost());
+        return attempt < retryPolicy.getMaxAttempts();
     }
 
-    private void recalcDownloadReceived() {
+    private boolean backOff(Exception ex, int attempt) {
+        if (!control.isRunning()) {
+            return false;
+        }
+        finishRun(progress.getReceivedBytes(), SegmentStatus.RUNNING);
+        stats.incrementRetries(download.getId());
+        metrics.retry(URI.create(download.getUrl()).getHost());
+
+        long delay = retryPolicy.delayMs(URI.create(download.getUrl()).getHost(), attempt, ex);
+        log.warn("[SegmentTask] download={} segId={} failed at {} bytes ({}), retry {}/{} in {} ms",
+                download.getId(), segment.getId(), progress.getReceivedBytes(), ex.toString(),
+                attempt, retryPolicy.getMaxAttempts() - 1, delay);
         try {
-            downloads.findById(download.getId()).ifPresent(d -> {
-                long sum = segments.findByDownload_Id(d.getId()).stream()
-                        .mapToLong(Segment::getReceivedBytes)
-                        .sum();
-                d.setReceivedBytes(sum);
-                d.setUpdatedAt(Instant.now());
-                downloads.save(d);
-            });
-        } catch (Exception ex) {
-            log.warn("[SegmentTask] recalc skipped, download may be deleted or locked: {}", ex.toString());
+            return retryPolicy.await(delay, control::isRunning);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
-    private void handlePause(long baseReceived, long receivedThisRun) {
-        long totalForSegment = Math.max(0, baseReceived + receivedThisRun);
+    private void stopWhileBackingOff() {
+        if (control.state() == DownloadControl.State.CANCELING) {
+            handleCancel(0, 0);
+        } else {
+            handlePause(0, 0);
+        }
+    }
 
-        segments.findById(segment.getId()).ifPresent(s -> {
-            s.setReceivedBytes(totalForSegment);
-            s.setStatus(SegmentStatus.PENDING);
-            segments.save(s);
-        });
+    private void releasePermit() {
+        if (permit != null) {
+            permit.close();
+            permit = null;
+        }
+    }
+
+    private static long retryAfterMs(HttpHeaders headers) {
+        return headers.firstValue("Retry-After").map(v -> {
+            try {
+                return Long.parseLong(v.trim()) * 1000L;
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        }).orElse(0L);
+    }
 
-        recalcDownloadReceived();
+    private void handlePause(long baseReceived, long receivedThisRun) {
+        finishRun(baseReceived + receivedThisRun, SegmentStatus.PENDING);
     }
 
     private void handleCancel(long baseReceived, long receivedThisRun) {
-        long totalForSegment = Math.max(0, baseReceived + receivedThisRun);
+        finishRun(baseReceived + receivedThisRun, SegmentStatus.CANCELED);
+    }
 
-        segments.findById(segment.getId()).ifPresent(s -> {
-            s.setReceivedBytes(totalForSegment);
-            s.setStatus(SegmentStatus.CANCELED);
-            segments.save(s);
-        });
+    private void finishRun(long totalForSegment, SegmentStatus status) {
+        long total = Math.max(0, totalForSegment);
+        if (progress != null) {
+            progressLedger.update(progress, Math.max(total, progress.getReceivedBytes()));
+            progressFlusher.flushDownload(download.getId());
+            if (status != SegmentStatus.CANCELED) {
+                checkpointer.checkpoint(download.getId());
+            }
+            total = progress.getReceivedBytes();
+        }
 
-        recalcDownloadReceived();
+        segments.updateProgress(segment.getId(), total, status);
     }
 
     private void handleError(Exception ex) {
         log.error("[SegmentTask] ERROR download={} segment={} : {}",
                 download.getId(), segment.getId(), ex.toString(), ex);
+        metrics.error(URI.create(download.getUrl()).getHost());
 
-        segments.findById(segment.getId()).ifPresent(s -> {
-            s.setStatus(SegmentStatus.ERROR);
-            segments.save(s);
-        });
+        if (progress != null) {
+            progressFlusher.flushDownload(download.getId());
+        }
+
+        segments.findById(segment.getId()).ifPresent(s -> segments.updateProgress(s.getId(),
+                progress != null ? progress.getReceivedBytes() : s.getReceivedBytes(),
+                SegmentStatus.ERROR));
 
         try {
-            downloads.findById(download.getId()).ifPresent(d -> {
-                if (d.getStatus() == DownloadStatus.RUNNING) {
-                    d.setStatus(DownloadStatus.ERROR);
-                    d.setUpdatedAt(Instant.now());
-                    downloads.save(d);
-                }
-            });
+            onFailed.accept(download.getId());
         } catch (Exception e) {
             log.warn("[SegmentTask] cannot update download status after error: {}", e.toString());
         }
@@ -1,6 +1,7 @@
 package org.example.dlm.service;
 
 import lombok.RequiredArgsConstructor;
+import org.example.dlm.domain.QueuePolicy;
 import org.example.dlm.domain.Settings;
 import org.example.dlm.domain.User;
 import org.example.dlm.repo.SettingsRepo;
@@ -14,6 +15,7 @@ public class SettingsService {
 
     private final SettingsRepo settingsRepo;
     private final UserRepo users;
+    private final BandwidthLimiter bandwidth;
 
     @Transactional
     public Settings getOrCreate(Long userId) {
@@ -24,18 +26,25 @@ public class SettingsService {
                     s.setUser(user);
                     s.setDefaultSegments(1);
                     s.setGlobalSpeedLimitBps(0);
+                    s.setAdaptiveSegments(false);
+                    s.setQueuePolicy(QueuePolicy.FIFO);
                     return settingsRepo.save(s);
                 });
     }
 
     @Transactional
-    public Settings update(Long userId, int defaultSegments, long globalSpeedLimitBps) {
+    public Settings update(Long userId, int defaultSegments, long globalSpeedLimitBps, boolean adaptiveSegments,
+                           QueuePolicy queuePolicy) {
         if (defaultSegments < 1) defaultSegments = 1;
         if (globalSpeedLimitBps < 0) globalSpeedLimitBps = 0;
 
         Settings current = getOrCreate(userId);
         current.setDefaultSegments(defaultSegments);
         current.setGlobalSpeedLimitBps(globalSpeedLimitBps);
-        return settingsRepo.save(current);
+        current.setAdaptiveSegments(adaptiveSegments);
+        current.setQueuePolicy(queuePolicy != null ? queuePolicy : QueuePolicy.FIFO);
+        Settings saved = settingsRepo.save(current);
+        bandwidth.setUserLimit(userId, globalSpeedLimitBps);
+        return saved;
     }
 }
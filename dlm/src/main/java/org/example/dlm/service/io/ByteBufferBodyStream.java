@@ -0,0 +1,79 @@
+package org.example.dlm.service.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class ByteBufferBodyStream implements Flow.Subscriber<List<ByteBuffer>>, AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> items = new LinkedBlockingQueue<>();
+
+    private volatile Flow.Subscription subscription;
+
+    private Iterator<ByteBuffer> current = Collections.emptyIterator();
+    private boolean done;
+
+    @Override
+    public void onSubscribe(Flow.Subscription s) {
+        subscription = s;
+        s.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        items.offer(buffers);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        items.offer(t);
+    }
+
+    @Override
+    public void onComplete() {
+        items.offer(END);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ByteBuffer next() throws IOException, InterruptedException {
+        while (true) {
+            if (current.hasNext()) {
+                return current.next();
+            }
+            if (done) {
+                return null;
+            }
+
+            Object item = items.take();
+            if (item == END) {
+                done = true;
+                return null;
+            }
+            if (item instanceof Throwable t) {
+                done = true;
+                throw t instanceof IOException io ? io : new IOException(t);
+            }
+
+            current = ((List<ByteBuffer>) item).iterator();
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!done) {
+            done = true;
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.dlm.service.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+class ChannelSegmentWriter implements SegmentWriter {
+
+    private final FileChannel channel;
+    private final Runnable onClose;
+    private boolean closed;
+
+    ChannelSegmentWriter(FileChannel channel, Runnable onClose) {
+        this.channel = channel;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        int written = 0;
+        while (src.hasRemaining()) {
+            written += channel.write(src, position + written);
+        }
+        return written;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        onClose.run();
+    }
+}
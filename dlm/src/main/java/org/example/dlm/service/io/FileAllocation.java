@@ -0,0 +1,9 @@
+package org.example.dlm.service.io;
+
+public enum FileAllocation {
+    NONE,
+
+    TRUNC,
+
+    PREALLOC
+}
@@ -0,0 +1,220 @@
+package org.example.dlm.service.io;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Component
+public class FileChannelRegistry {
+
+    private static final int ZERO_FILL_CHUNK = 1024 * 1024;
+
+    private final Map<UUID, Handle> open = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final FileAllocation allocation;
+    private final long mmapMaxBytes;
+
+    public FileChannelRegistry(@Value("${dlm.io.file-allocation:trunc}") String allocation,
+                               @Value("${dlm.io.mmap-max-bytes:0}") long mmapMaxBytes) {
+        this.allocation = FileAllocation.valueOf(allocation.trim().toUpperCase(Locale.ROOT));
+        this.mmapMaxBytes = Math.min(Math.max(0, mmapMaxBytes), Integer.MAX_VALUE);
+    }
+
+    public FileChannel acquire(UUID downloadId, Path path) throws IOException {
+        lock.lock();
+        try {
+            Handle h = open.get(downloadId);
+            if (h == null) {
+                h = new Handle(openChannel(path));
+                open.put(downloadId, h);
+            } else if (!h.channel.isOpen()) {
+                // an interrupted holder closed the shared channel; the other holders still count
+                log.warn("[FileChannelRegistry] channel for {} was closed under {} holders, reopening", downloadId, h.refs);
+                h.channel = openChannel(path);
+            }
+            h.refs++;
+            return h.channel;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(UUID downloadId) {
+        lock.lock();
+        try {
+            Handle h = open.get(downloadId);
+            if (h == null) return;
+            if (--h.refs > 0) return;
+
+            open.remove(downloadId);
+            try {
+                h.channel.close();
+            } catch (IOException ex) {
+                log.warn("[FileChannelRegistry] cannot close channel for {}: {}", downloadId, ex.toString());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void allocate(UUID downloadId, Path path, long totalBytes) throws IOException {
+        if (totalBytes <= 0) return;
+
+        FileChannel channel = acquire(downloadId, path);
+        try {
+            long size = channel.size();
+            if (size > totalBytes) {
+                channel.truncate(totalBytes);
+                return;
+            }
+            if (allocation == FileAllocation.NONE || size == totalBytes) {
+                return;
+            }
+
+            if (allocation == FileAllocation.PREALLOC) {
+                ByteBuffer zeros = ByteBuffer.allocateDirect(ZERO_FILL_CHUNK);
+                long pos = size;
+                while (pos < totalBytes) {
+                    zeros.clear().limit((int) Math.min(ZERO_FILL_CHUNK, totalBytes - pos));
+                    while (zeros.hasRemaining()) {
+                        pos += channel.write(zeros, pos);
+                    }
+                }
+            } else {
+                channel.write(ByteBuffer.wrap(new byte[1]), totalBytes - 1);
+            }
+            log.info("[FileChannelRegistry] allocated {} bytes ({}) for {}", totalBytes, allocation, downloadId);
+        } finally {
+            release(downloadId);
+        }
+    }
+
+    public void digest(UUID downloadId, Path path, long from, long length, SegmentDigest digest) throws IOException {
+        FileChannel channel = acquire(downloadId, path);
+        try {
+            digest.update(channel, from, length);
+        } finally {
+            release(downloadId);
+        }
+    }
+
+    public void force(UUID downloadId, Path path) throws IOException {
+        FileChannel channel = acquire(downloadId, path);
+        try {
+            // FileChannel.force does not cover bytes stored through a MappedByteBuffer
+            for (MappedByteBuffer window : windows(downloadId)) {
+                try {
+                    window.force();
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            }
+            channel.force(false);
+        } finally {
+            release(downloadId);
+        }
+    }
+
+    public SegmentWriter openWriter(UUID downloadId, Path path,
+                                    long windowStart, long windowEnd, long totalBytes) throws IOException {
+        FileChannel channel = acquire(downloadId, path);
+        Runnable onClose = () -> release(downloadId);
+
+        long windowLength = windowEnd - windowStart + 1;
+        boolean mapped = mmapMaxBytes > 0
+                && allocation != FileAllocation.NONE
+                && totalBytes > 0
+                && totalBytes <= mmapMaxBytes
+                && windowStart >= 0
+                && windowLength > 0;
+
+        try {
+            if (mapped) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, windowLength);
+                track(downloadId, window);
+                return new MappedSegmentWriter(channel, window, windowStart, () -> {
+                    untrack(downloadId, window);
+                    release(downloadId);
+                });
+            }
+            return new ChannelSegmentWriter(channel, onClose);
+        } catch (IOException | RuntimeException ex) {
+            onClose.run();
+            throw ex;
+        }
+    }
+
+    List<MappedByteBuffer> windows(UUID downloadId) {
+        lock.lock();
+        try {
+            Handle h = open.get(downloadId);
+            return h != null ? List.copyOf(h.windows) : List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void track(UUID downloadId, MappedByteBuffer window) {
+        lock.lock();
+        try {
+            Handle h = open.get(downloadId);
+            if (h != null) {
+                h.windows.add(window);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void untrack(UUID downloadId, MappedByteBuffer window) {
+        try {
+            window.force();
+        } catch (UncheckedIOException ex) {
+            log.warn("[FileChannelRegistry] cannot force mapped window of {}: {}", downloadId, ex.getCause().toString());
+        }
+        lock.lock();
+        try {
+            Handle h = open.get(downloadId);
+            if (h != null) {
+                // ByteBuffer.equals compares contents, so windows are matched by identity
+                h.windows.removeIf(w -> w == window);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private static final class Handle {
+        private FileChannel channel;
+        private final List<MappedByteBuffer> windows = new ArrayList<>();
+        private int refs;
+
+        private Handle(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.dlm.service.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+class MappedSegmentWriter extends ChannelSegmentWriter {
+
+    private final MappedByteBuffer window;
+    private final long windowStart;
+
+    MappedSegmentWriter(FileChannel channel, MappedByteBuffer window, long windowStart, Runnable onClose) {
+        super(channel, onClose);
+        this.window = window;
+        this.windowStart = windowStart;
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        int len = src.remaining();
+        long offset = position - windowStart;
+        if (offset < 0 || offset + len > window.capacity()) {
+            return super.write(src, position);
+        }
+        window.put((int) offset, src, src.position(), len);
+        src.position(src.limit());
+        return len;
+    }
+}
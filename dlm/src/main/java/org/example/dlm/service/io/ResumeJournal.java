@@ -0,0 +1,184 @@
+package org.example.dlm.service.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+public class ResumeJournal implements AutoCloseable {
+
+    public static final String SUFFIX = ".dlmj";
+
+    private static final int MAGIC = 0x444C4D4A;
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+    private static final int RECORD = 4 * Long.BYTES + Integer.BYTES;
+    private static final long COMPACT_BYTES = 64 * 1024;
+
+    public record Entry(long segmentId, long startByte, long endByte, long receivedBytes) {
+    }
+
+    private final Path path;
+    private final Map<Long, Entry> latest;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+
+    private ResumeJournal(Path path, Map<Long, Entry> latest, FileChannel channel) {
+        this.path = path;
+        this.latest = latest;
+        this.channel = channel;
+    }
+
+    public static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    public static Map<Long, Entry> read(Path path) throws IOException {
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(ch, entries);
+        }
+        return entries;
+    }
+
+    public static ResumeJournal open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            Map<Long, Entry> entries = new LinkedHashMap<>();
+            long end = scan(ch, entries);
+            if (end < HEADER) {
+                ch.truncate(0);
+                writeFully(ch, header(), 0);
+                end = HEADER;
+            } else if (end < ch.size()) {
+                // drop a record torn by a crash in the middle of an append
+                ch.truncate(end);
+            }
+            ch.position(end);
+            return new ResumeJournal(path, entries, ch);
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+
+    public void append(Collection<Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+
+        lock.lock();
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(entries.size() * RECORD);
+            for (Entry e : entries) {
+                encode(buf, e);
+                latest.put(e.segmentId(), e);
+            }
+            buf.flip();
+            long end = channel.position();
+            writeFully(channel, buf, end);
+            channel.position(end + buf.limit());
+            channel.force(false);
+
+            if (channel.size() > COMPACT_BYTES) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER + latest.size() * RECORD);
+            buf.put(header());
+            latest.values().forEach(e -> encode(buf, e));
+            buf.flip();
+            writeFully(out, buf, 0);
+            out.force(false);
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    private static long scan(FileChannel ch, Map<Long, Entry> entries) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER);
+        if (ch.read(head, 0) < HEADER || head.getInt(0) != MAGIC || head.getInt(4) != VERSION) {
+            return 0;
+        }
+
+        ByteBuffer rec = ByteBuffer.allocate(RECORD);
+        long pos = HEADER;
+        while (true) {
+            rec.clear();
+            if (!readFully(ch, rec, pos)) {
+                return pos;
+            }
+            rec.flip();
+            long segmentId = rec.getLong();
+            long startByte = rec.getLong();
+            long endByte = rec.getLong();
+            long receivedBytes = rec.getLong();
+            if (rec.getInt() != crc(rec.array())) {
+                return pos;
+            }
+            entries.put(segmentId, new Entry(segmentId, startByte, endByte, receivedBytes));
+            pos += RECORD;
+        }
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static void encode(ByteBuffer buf, Entry e) {
+        int from = buf.position();
+        buf.putLong(e.segmentId()).putLong(e.startByte()).putLong(e.endByte()).putLong(e.receivedBytes());
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), buf.arrayOffset() + from, RECORD - Integer.BYTES);
+        buf.putInt((int) crc.getValue());
+    }
+
+    private static int crc(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record, 0, RECORD - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    private static boolean readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.dlm.service.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public class SegmentDigest {
+
+    private static final int READ_CHUNK = 256 * 1024;
+
+    private final MessageDigest sha;
+    private long hashedBytes;
+
+    private SegmentDigest(MessageDigest sha) {
+        this.sha = sha;
+    }
+
+    public static SegmentDigest sha256() {
+        try {
+            return new SegmentDigest(MessageDigest.getInstance("SHA-256"));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    public void update(ByteBuffer src) {
+        hashedBytes += src.remaining();
+        sha.update(src);
+    }
+
+    public void update(FileChannel channel, long from, long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(READ_CHUNK, Math.max(1, length)));
+        long position = from;
+        long end = from + length;
+        while (position < end) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - position));
+            int read = channel.read(buf, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of file at " + position);
+            }
+            buf.flip();
+            position += read;
+            update(buf);
+        }
+    }
+
+    public long hashedBytes() {
+        return hashedBytes;
+    }
+
+    public String hex() {
+        return HexFormat.of().formatHex(sha.digest());
+    }
+}
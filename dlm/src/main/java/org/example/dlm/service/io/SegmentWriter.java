@@ -0,0 +1,12 @@
+package org.example.dlm.service.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface SegmentWriter extends AutoCloseable {
+
+    int write(ByteBuffer src, long position) throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,77 @@
+package org.example.dlm.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class EngineMetrics {
+
+    private final MeterRegistry registry;
+    private final AtomicInteger activeSegments = new AtomicInteger();
+    private final Timer flushTimer;
+
+    public EngineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        registry.gauge("dlm.segments.active", activeSegments);
+        this.flushTimer = Timer.builder("dlm.progress.flush")
+                .description("Time to write buffered segment progress to the database")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public Transfer transfer(String host, Long userId) {
+        Counter bytes = Counter.builder("dlm.transfer.bytes")
+                .description("Bytes received from remote hosts")
+                .baseUnit("bytes")
+                .tag("host", host == null ? "unknown" : host)
+                .tag("user", String.valueOf(userId))
+                .register(registry);
+        Timer ttfb = Timer.builder("dlm.http.ttfb")
+                .description("Time from sending a segment request to its first body bytes")
+                .tag("host", host == null ? "unknown" : host)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        return new Transfer(bytes, ttfb);
+    }
+
+    public Active activeSegment() {
+        activeSegments.incrementAndGet();
+        return activeSegments::decrementAndGet;
+    }
+
+    public void retry(String host) {
+        registry.counter("dlm.segment.retries", "host", host == null ? "unknown" : host).increment();
+    }
+
+    public void error(String host) {
+        registry.counter("dlm.segment.errors", "host", host == null ? "unknown" : host).increment();
+    }
+
+    public void flushed(long startedNanos) {
+        flushTimer.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public interface Active extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public record Transfer(Counter bytes, Timer ttfb) {
+
+        public void received(int count) {
+            bytes.increment(count);
+        }
+
+        public void firstByte(long requestedNanos) {
+            ttfb.record(System.nanoTime() - requestedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
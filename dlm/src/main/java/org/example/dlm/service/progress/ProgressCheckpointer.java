@@ -0,0 +1,129 @@
+package org.example.dlm.service.progress;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.service.io.FileChannelRegistry;
+import org.example.dlm.service.io.ResumeJournal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Component
+public class ProgressCheckpointer {
+
+    private final SegmentProgressLedger ledger;
+    private final FileChannelRegistry fileChannels;
+
+    @Getter
+    private final boolean enabled;
+
+    private final Map<UUID, Path> files = new ConcurrentHashMap<>();
+    private final Map<UUID, OpenJournal> open = new ConcurrentHashMap<>();
+    private final ReentrantLock opening = new ReentrantLock();
+
+    public ProgressCheckpointer(SegmentProgressLedger ledger,
+                                FileChannelRegistry fileChannels,
+                                @Value("${dlm.journal.enabled:true}") boolean enabled) {
+        this.ledger = ledger;
+        this.fileChannels = fileChannels;
+        this.enabled = enabled;
+    }
+
+    public void attach(UUID downloadId, Path file) {
+        if (enabled) {
+            files.put(downloadId, file);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${dlm.journal.interval-ms:1000}")
+    public void checkpointAll() {
+        Set<UUID> active = ledger.activeDownloads();
+        active.forEach(this::checkpoint);
+        for (UUID id : open.keySet()) {
+            if (!active.contains(id)) {
+                close(id);
+            }
+        }
+    }
+
+    public void checkpoint(UUID downloadId) {
+        Path file = files.get(downloadId);
+        if (file == null) return;
+
+        List<SegmentProgress> active = ledger.active(downloadId);
+        if (active.isEmpty()) return;
+
+        // offsets are read before the data fsync, so every journaled offset covers bytes already on disk
+        List<ResumeJournal.Entry> entries = new ArrayList<>(active.size());
+        for (SegmentProgress p : active) {
+            entries.add(new ResumeJournal.Entry(p.getSegmentId(), p.getStartByte(), p.getEndByte(), p.getReceivedBytes()));
+        }
+
+        try {
+            OpenJournal journal = journal(downloadId, file);
+            journal.lock().lock();
+            try {
+                fileChannels.force(downloadId, file);
+                journal.journal().append(entries);
+            } finally {
+                journal.lock().unlock();
+            }
+        } catch (IOException ex) {
+            log.warn("[Journal] checkpoint of {} failed: {}", downloadId, ex.toString());
+            close(downloadId);
+        }
+    }
+
+    public void discard(UUID downloadId, Path file) {
+        files.remove(downloadId);
+        close(downloadId);
+        try {
+            Files.deleteIfExists(ResumeJournal.pathFor(file));
+        } catch (IOException ex) {
+            log.warn("[Journal] cannot delete journal of {}: {}", downloadId, ex.toString());
+        }
+    }
+
+    private OpenJournal journal(UUID downloadId, Path file) throws IOException {
+        OpenJournal journal = open.get(downloadId);
+        if (journal != null) {
+            return journal;
+        }
+        opening.lock();
+        try {
+            journal = open.get(downloadId);
+            if (journal == null) {
+                journal = new OpenJournal(ResumeJournal.open(ResumeJournal.pathFor(file)), new ReentrantLock());
+                open.put(downloadId, journal);
+            }
+            return journal;
+        } finally {
+            opening.unlock();
+        }
+    }
+
+    private void close(UUID downloadId) {
+        OpenJournal journal = open.remove(downloadId);
+        if (journal == null) return;
+        try {
+            journal.journal().close();
+        } catch (IOException ex) {
+            log.warn("[Journal] cannot close journal of {}: {}", downloadId, ex.toString());
+        }
+    }
+
+    private record OpenJournal(ResumeJournal journal, ReentrantLock lock) {
+    }
+}
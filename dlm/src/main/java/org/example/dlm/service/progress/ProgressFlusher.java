@@ -0,0 +1,125 @@
+package org.example.dlm.service.progress;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.service.metrics.EngineMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+@Slf4j
+@Component
+public class ProgressFlusher {
+
+    private static final String UPDATE_SEGMENT_SQL =
+            "update segments set received_bytes = ? where id = ?";
+
+    private static final String UPDATE_DOWNLOAD_SQL =
+            "update downloads set received_bytes = " +
+            "(select coalesce(sum(s.received_bytes), 0) from segments s where s.download_id = ?), " +
+            "updated_at = ? where id = ?";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final SegmentProgressLedger ledger;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final EngineMetrics metrics;
+
+    // flushes of one download stay ordered; unlike synchronized, these do not pin virtual threads during JDBC
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public ProgressFlusher(SegmentProgressLedger ledger,
+                           JdbcTemplate jdbc,
+                           PlatformTransactionManager transactionManager,
+                           EngineMetrics metrics) {
+        this.ledger = ledger;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.metrics = metrics;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${dlm.progress.flush-interval-ms:500}")
+    public void flush() {
+        // stripes busy with a segment's own flush are left for the next run
+        boolean[] held = new boolean[LOCK_STRIPES];
+        List<ReentrantLock> acquired = new ArrayList<>();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            if (locks[i].tryLock()) {
+                held[i] = true;
+                acquired.add(locks[i]);
+            }
+        }
+        try {
+            flush(id -> held[stripe(id)]);
+        } finally {
+            acquired.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    public void flushDownload(UUID downloadId) {
+        if (downloadId == null) return;
+        ReentrantLock lock = locks[stripe(downloadId)];
+        lock.lock();
+        try {
+            flush(downloadId::equals);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripe(UUID downloadId) {
+        return Math.floorMod(downloadId.hashCode(), LOCK_STRIPES);
+    }
+
+    private void flush(Predicate<UUID> downloads) {
+        List<SegmentProgress> dirtySegments = ledger.takeDirtySegments(downloads);
+        // a writer may mark its download dirty only after that flag was taken, so every flushed segment re-sums its own
+        Set<UUID> touched = new LinkedHashSet<>(ledger.takeDirtyDownloads(downloads));
+        dirtySegments.forEach(p -> touched.add(p.getDownloadId()));
+        List<UUID> dirtyDownloads = new ArrayList<>(touched);
+        if (dirtySegments.isEmpty() && dirtyDownloads.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        try {
+            tx.executeWithoutResult(status -> {
+                if (!dirtySegments.isEmpty()) {
+                    jdbc.batchUpdate(UPDATE_SEGMENT_SQL, dirtySegments, dirtySegments.size(), (ps, p) -> {
+                        ps.setLong(1, p.getReceivedBytes());
+                        ps.setLong(2, p.getSegmentId());
+                    });
+                }
+                if (!dirtyDownloads.isEmpty()) {
+                    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+                    jdbc.batchUpdate(UPDATE_DOWNLOAD_SQL, dirtyDownloads, dirtyDownloads.size(), (ps, id) -> {
+                        ps.setObject(1, id);
+                        ps.setObject(2, now);
+                        ps.setObject(3, id);
+                    });
+                }
+            });
+            metrics.flushed(started);
+            log.debug("[ProgressFlusher] flushed {} segments, {} downloads",
+                    dirtySegments.size(), dirtyDownloads.size());
+        } catch (Exception ex) {
+            log.warn("[ProgressFlusher] flush failed, will retry: {}", ex.toString());
+            ledger.restore(dirtySegments, dirtyDownloads);
+        }
+    }
+}
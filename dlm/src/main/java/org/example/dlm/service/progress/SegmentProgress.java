@@ -0,0 +1,78 @@
+package org.example.dlm.service.progress;
+
+import lombok.Getter;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SegmentProgress {
+
+    @Getter
+    private final Long segmentId;
+
+    @Getter
+    private final UUID downloadId;
+
+    @Getter
+    private final long startByte;
+
+    private final AtomicLong endByte;
+    private final AtomicLong receivedBytes;
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    SegmentProgress(Long segmentId, UUID downloadId, long startByte, long endByte, long receivedBytes) {
+        this.segmentId = segmentId;
+        this.downloadId = downloadId;
+        this.startByte = startByte;
+        this.endByte = new AtomicLong(endByte);
+        this.receivedBytes = new AtomicLong(Math.max(0, receivedBytes));
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    public long getEndByte() {
+        return endByte.get();
+    }
+
+    public long remainingBytes() {
+        long end = endByte.get();
+        if (end < startByte) return -1;
+        return Math.max(0, end - (startByte + receivedBytes.get()) + 1);
+    }
+
+    public long writableFrom(long position, long bytes) {
+        long end = endByte.get();
+        if (end < startByte) return bytes;
+        return Math.max(0, Math.min(bytes, end - position + 1));
+    }
+
+    public boolean shrinkEnd(long expectedEnd, long newEnd) {
+        return newEnd < expectedEnd && endByte.compareAndSet(expectedEnd, newEnd);
+    }
+
+    public boolean restoreEnd(long shrunkEnd, long originalEnd) {
+        return endByte.compareAndSet(shrunkEnd, originalEnd);
+    }
+
+    long update(long totalForSegment) {
+        long total = Math.max(0, totalForSegment);
+        long end = endByte.get();
+        if (end >= startByte) {
+            total = Math.min(total, end - startByte + 1);
+        }
+        long previous = receivedBytes.getAndSet(total);
+        dirty.set(true);
+        return total - previous;
+    }
+
+    boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    void markDirty() {
+        dirty.set(true);
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.dlm.service.progress;
+
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.service.DownloadStatusChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+@Component
+public class SegmentProgressLedger {
+
+    private final ConcurrentHashMap<Long, SegmentProgress> bySegment = new ConcurrentHashMap<>();
+
+    private final Set<UUID> dirtyDownloads = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentHashMap<UUID, AtomicLong> writtenByDownload = new ConcurrentHashMap<>();
+
+    public SegmentProgress track(Long segmentId, UUID downloadId,
+                                 long startByte, long endByte, long receivedBytes) {
+        SegmentProgress progress = new SegmentProgress(segmentId, downloadId, startByte, endByte, receivedBytes);
+        bySegment.put(segmentId, progress);
+        return progress;
+    }
+
+    public void update(SegmentProgress progress, long totalForSegment) {
+        long delta = progress.update(totalForSegment);
+        if (delta != 0) {
+            writtenByDownload.computeIfAbsent(progress.getDownloadId(), id -> new AtomicLong()).addAndGet(delta);
+        }
+        dirtyDownloads.add(progress.getDownloadId());
+    }
+
+    public void touch(UUID downloadId) {
+        dirtyDownloads.add(downloadId);
+    }
+
+    public void forget(Long segmentId) {
+        bySegment.remove(segmentId);
+    }
+
+    public void forgetDownload(UUID downloadId) {
+        writtenByDownload.remove(downloadId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChangedEvent event) {
+        if (event.status() == DownloadStatus.COMPLETED
+                || event.status() == DownloadStatus.CANCELED
+                || event.status() == DownloadStatus.ERROR) {
+            forgetDownload(event.downloadId());
+        }
+    }
+
+    public List<SegmentProgress> active(UUID downloadId) {
+        List<SegmentProgress> list = new ArrayList<>();
+        for (SegmentProgress p : bySegment.values()) {
+            if (p.getDownloadId().equals(downloadId)) {
+                list.add(p);
+            }
+        }
+        return list;
+    }
+
+    public Set<UUID> activeDownloads() {
+        Set<UUID> ids = new HashSet<>();
+        for (SegmentProgress p : bySegment.values()) {
+            ids.add(p.getDownloadId());
+        }
+        return ids;
+    }
+
+    public long writtenFor(UUID downloadId) {
+        AtomicLong written = writtenByDownload.get(downloadId);
+        return written != null ? written.get() : 0L;
+    }
+
+    List<SegmentProgress> takeDirtySegments(Predicate<UUID> downloads) {
+        List<SegmentProgress> dirty = new ArrayList<>();
+        for (SegmentProgress p : bySegment.values()) {
+            if (!downloads.test(p.getDownloadId())) continue;
+            if (p.takeDirty()) {
+                dirty.add(p);
+            }
+        }
+        return dirty;
+    }
+
+    List<UUID> takeDirtyDownloads(Predicate<UUID> downloads) {
+        List<UUID> dirty = new ArrayList<>();
+        for (UUID id : dirtyDownloads) {
+            if (downloads.test(id) && dirtyDownloads.remove(id)) {
+                dirty.add(id);
+            }
+        }
+        return dirty;
+    }
+
+    void restore(List<SegmentProgress> segments, List<UUID> downloads) {
+        segments.forEach(SegmentProgress::markDirty);
+        dirtyDownloads.addAll(downloads);
+    }
+}
@@ -6,7 +6,11 @@ import org.example.dlm.observer.Subject;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
@@ -16,8 +20,10 @@ import java.util.stream.Collectors;
 public class SpeedMeter implements Subject {
 
     private static final long WINDOW_MS = 3000L;
+    private static final long PEAK_SPAN_MS = 1000L;
+    private static final long IDLE_EVICT_MS = WINDOW_MS + SpeedWindow.BUCKET_MS;
 
-    private final Map<UUID, List<SpeedSample>> samplesByDownload = new ConcurrentHashMap<>();
+    private final Map<UUID, SpeedWindow> windowByDownload = new ConcurrentHashMap<>();
 
     private final Map<UUID, SpeedState> stateByDownload = new ConcurrentHashMap<>();
 
@@ -54,10 +60,9 @@ public class SpeedMeter implements Subject {
     public void onBytesDownloaded(UUID downloadId, long bytes, long timestampMs) {
         if (downloadId == null || bytes <= 0) return;
 
-        List<SpeedSample> list = samplesByDownload
-                .computeIfAbsent(downloadId, id -> new CopyOnWriteArrayList<>());
-
-        list.add(new SpeedSample(bytes, timestampMs));
+        windowByDownload
+                .computeIfAbsent(downloadId, id -> new SpeedWindow(WINDOW_MS))
+                .record(bytes, timestampMs);
     }
 
     public Optional<SpeedState> getState(UUID downloadId) {
@@ -75,49 +80,24 @@ public class SpeedMeter implements Subject {
     @Scheduled(fixedDelay = 1000)
     public void recalcAndNotify() {
         long now = System.currentTimeMillis();
+        List<UUID> idle = new ArrayList<>();
 
-        for (Map.Entry<UUID, List<SpeedSample>> entry : samplesByDownload.entrySet()) {
-            UUID downloadId = entry.getKey();
-            List<SpeedSample> rawList = entry.getValue();
-
-            List<SpeedSample> samples = new ArrayList<>(rawList);
-
-            long cutoff = now - WINDOW_MS;
-            samples.removeIf(s -> s.getTimestampMs() < cutoff);
-
-            rawList.removeIf(s -> s.getTimestampMs() < cutoff);
-
-            SpeedState state = computeState(samples);
-            stateByDownload.put(downloadId, state);
+        for (Map.Entry<UUID, SpeedWindow> entry : windowByDownload.entrySet()) {
+            SpeedWindow window = entry.getValue();
+            stateByDownload.put(entry.getKey(), window.snapshot(now, PEAK_SPAN_MS));
+            if (now - window.lastRecordedAt() > IDLE_EVICT_MS) {
+                idle.add(entry.getKey());
+            }
         }
 
         notifyObservers();
-    }
-
-    private SpeedState computeState(List<SpeedSample> samples) {
-        if (samples.isEmpty()) {
-            return new SpeedState(0.0, 0.0, WINDOW_MS);
-        }
-
-        samples.sort(Comparator.comparingLong(SpeedSample::getTimestampMs));
 
-        long totalBytes = 0L;
-        long minTs = samples.get(0).getTimestampMs();
-        long maxTs = minTs;
-
-        for (SpeedSample s : samples) {
-            totalBytes += s.getBytes();
-            long ts = s.getTimestampMs();
-            if (ts > maxTs) maxTs = ts;
+        for (UUID downloadId : idle) {
+            SpeedWindow window = windowByDownload.get(downloadId);
+            if (window != null && now - window.lastRecordedAt() > IDLE_EVICT_MS
+                    && windowByDownload.remove(downloadId, window)) {
+                stateByDownload.remove(downloadId);
+            }
         }
-
-        long durationMs = maxTs - minTs;
-        if (durationMs <= 0) durationMs = 1;
-
-        double avgSpeedBps = totalBytes * 1000.0 / durationMs;
-
-        double windowBasedMax = avgSpeedBps;
-
-        return new SpeedState(avgSpeedBps, windowBasedMax, WINDOW_MS);
     }
 }
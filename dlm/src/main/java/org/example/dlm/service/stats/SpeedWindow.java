@@ -0,0 +1,82 @@
+package org.example.dlm.service.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class SpeedWindow {
+
+    static final long BUCKET_MS = 100L;
+
+    private final int size;
+    private final AtomicLongArray bytes;
+    private final AtomicLongArray epochs;
+
+    private volatile long lastRecordedAt;
+
+    SpeedWindow(long windowMs) {
+        this.size = (int) Math.max(2, windowMs / BUCKET_MS);
+        this.bytes = new AtomicLongArray(size);
+        this.epochs = new AtomicLongArray(size);
+    }
+
+    void record(long amount, long timestampMs) {
+        long epoch = timestampMs / BUCKET_MS;
+        int i = (int) (epoch % size);
+
+        long stamp = epochs.get(i);
+        if (stamp < epoch) {
+            long stale = bytes.get(i);
+            if (epochs.compareAndSet(i, stamp, epoch)) {
+                bytes.addAndGet(i, -stale);
+            }
+        }
+        if (epochs.get(i) == epoch) {
+            bytes.addAndGet(i, amount);
+        }
+        lastRecordedAt = timestampMs;
+    }
+
+    long lastRecordedAt() {
+        return lastRecordedAt;
+    }
+
+    SpeedState snapshot(long nowMs, long peakSpanMs) {
+        long current = nowMs / BUCKET_MS;
+        long oldest = current - size;
+
+        long total = 0L;
+        long first = -1L;
+        long[] sums = new long[size];
+        for (int k = 0; k < size; k++) {
+            long epoch = oldest + k;
+            int i = (int) (epoch % size);
+            long b = epochs.get(i) == epoch ? bytes.get(i) : 0L;
+            sums[k] = b;
+            total += b;
+            if (first < 0 && b > 0) {
+                first = k;
+            }
+        }
+
+        long windowMs = size * BUCKET_MS;
+        if (first < 0) {
+            return new SpeedState(0.0, 0.0, windowMs);
+        }
+
+        int active = (int) (size - first);
+        double avg = total * 1000.0 / (active * BUCKET_MS);
+
+        int span = (int) Math.max(1, Math.min(active, peakSpanMs / BUCKET_MS));
+        long run = 0L;
+        long best = 0L;
+        for (int k = (int) first; k < size; k++) {
+            run += sums[k];
+            if (k - first >= span) {
+                run -= sums[k - span];
+            }
+            best = Math.max(best, run);
+        }
+        double peak = best * 1000.0 / (span * BUCKET_MS);
+
+        return new SpeedState(avg, Math.max(avg, peak), windowMs);
+    }
+}
@@ -1,28 +1,43 @@
 package org.example.dlm.service.stats;
 
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.example.dlm.domain.Download;
-import org.example.dlm.domain.Stats;
 import org.example.dlm.observer.Observer;
 import org.example.dlm.observer.Subject;
-import org.example.dlm.repo.DownloadRepo;
-import org.example.dlm.repo.StatsRepo;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class StatsObserver implements Observer {
 
-    private final StatsRepo statsRepo;
-    private final DownloadRepo downloadRepo;
+    private static final double MIN_CHANGE_BPS = 1.0;
+
+    private static final String UPDATE_STATS_SQL =
+            "update stats set avg_speed_bps = ?, max_speed_bps = greatest(max_speed_bps, ?) " +
+            "where download_id = ?";
 
     private final SpeedMeter speedMeter;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    private final Map<UUID, SpeedState> persisted = new ConcurrentHashMap<>();
+
+    public StatsObserver(SpeedMeter speedMeter,
+                         JdbcTemplate jdbc,
+                         PlatformTransactionManager transactionManager) {
+        this.speedMeter = speedMeter;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
 
     @PostConstruct
     public void register() {
@@ -37,39 +52,39 @@ public class StatsObserver implements Observer {
         }
 
         Map<UUID, SpeedState> states = meter.getAllStatesSnapshot();
+        persisted.keySet().retainAll(states.keySet());
         if (states.isEmpty()) {
             return;
         }
 
+        List<Map.Entry<UUID, SpeedState>> changed = new ArrayList<>();
         for (Map.Entry<UUID, SpeedState> entry : states.entrySet()) {
-            UUID downloadId = entry.getKey();
-            SpeedState state = entry.getValue();
-
-            if (state == null) continue;
-
-            downloadRepo.findById(downloadId).ifPresent(download -> {
-                Stats stats = statsRepo.findById(downloadId)
-                        .orElseGet(() -> createStats(download));
-
-                double avgSpeed = state.getAvgSpeedBps();
-                double windowMax = state.getMaxSpeedBps();
-
-                stats.setAvgSpeedBps(avgSpeed);
-
-                double prevMax = stats.getMaxSpeedBps();
-                double newMax = Math.max(prevMax, windowMax);
-                stats.setMaxSpeedBps(newMax);
+            if (isChanged(persisted.get(entry.getKey()), entry.getValue())) {
+                changed.add(entry);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
 
-                statsRepo.save(stats);
-            });
+        try {
+            tx.executeWithoutResult(status ->
+                    jdbc.batchUpdate(UPDATE_STATS_SQL, changed, changed.size(), (ps, e) -> {
+                        ps.setDouble(1, e.getValue().getAvgSpeedBps());
+                        ps.setDouble(2, e.getValue().getMaxSpeedBps());
+                        ps.setObject(3, e.getKey());
+                    }));
+            changed.forEach(e -> persisted.put(e.getKey(), e.getValue()));
+            log.debug("[StatsObserver] persisted speed for {} downloads", changed.size());
+        } catch (Exception ex) {
+            log.warn("[StatsObserver] stats update failed, will retry: {}", ex.toString());
         }
     }
 
-    private Stats createStats(Download download) {
-        Stats stats = new Stats();
-        stats.setDownload(download);
-        stats.setAvgSpeedBps(0.0);
-        stats.setMaxSpeedBps(0.0);
-        return stats;
+    private boolean isChanged(SpeedState previous, SpeedState current) {
+        if (current == null) return false;
+        if (previous == null) return true;
+        return Math.abs(previous.getAvgSpeedBps() - current.getAvgSpeedBps()) >= MIN_CHANGE_BPS
+                || current.getMaxSpeedBps() > previous.getMaxSpeedBps() + MIN_CHANGE_BPS;
     }
 }
@@ -2,20 +2,24 @@ package org.example.dlm.web;
 
 import lombok.RequiredArgsConstructor;
 import org.example.dlm.domain.DownloadStatus;
-import org.example.dlm.repo.StatsRepo;
+import org.example.dlm.repo.DownloadSummary;
 import org.example.dlm.repo.UserRepo;
 import org.example.dlm.service.DownloadService;
+import org.example.dlm.service.IntegrityVerifier;
 import org.example.dlm.service.integration.ManualUrlHandler;
+import org.example.dlm.web.dto.DownloadCursor;
 import org.example.dlm.web.dto.DownloadForm;
 import org.example.dlm.web.dto.DownloadProgressDto;
 import org.example.dlm.p2p.PeerClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,15 +30,32 @@ public class DownloadController {
 
     private final DownloadService downloadService;
     private final UserRepo users;
-    private final StatsRepo stats;
+    private final DownloadProgressStream progressStream;
     private final PeerClient peerClient;
 
     private final ManualUrlHandler manualUrlHandler;
 
+    @Value("${dlm.downloads.page-size:50}")
+    private int pageSize;
+
     @GetMapping
-    public String list(Model model, @AuthenticationPrincipal UserDetails auth) {
+    public String list(Model model, @AuthenticationPrincipal UserDetails auth,
+                       @RequestParam(required = false) DownloadStatus status,
+                       @RequestParam(required = false) String cursor) {
         var user = users.findByUsername(auth.getUsername()).orElseThrow();
-        model.addAttribute("items", downloadService.listByUser(user.getId()));
+
+        List<DownloadSummary> items = page(user.getId(), status, cursor, pageSize + 1);
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = DownloadCursor.after(items.get(pageSize - 1)).toString();
+        }
+
+        model.addAttribute("items", items);
+        model.addAttribute("status", status);
+        model.addAttribute("statuses", DownloadStatus.values());
+        model.addAttribute("cursor", DownloadCursor.parse(cursor));
+        model.addAttribute("nextCursor", nextCursor);
         model.addAttribute("form", new DownloadForm());
         return "downloads/list";
     }
@@ -47,14 +68,18 @@ public class DownloadController {
 
         if (form.getUrl() == null || form.getUrl().isBlank()) {
             model.addAttribute("error", "URL не може бути порожнім");
-            return list(model, auth);
+            return list(model, auth, null, null);
         }
 
         try {
-            manualUrlHandler.handle(user.getId(), form.getUrl());
+            String sha256 = IntegrityVerifier.normalizeSha256(form.getSha256());
+            var added = manualUrlHandler.handle(user.getId(), form.getUrl());
+            if (sha256 != null) {
+                downloadService.setExpectedSha256ForUser(user.getId(), added.getId(), sha256);
+            }
         } catch (IllegalArgumentException ex) {
             model.addAttribute("error", ex.getMessage());
-            return list(model, auth);
+            return list(model, auth, null, null);
         }
 
         return "redirect:/downloads";
@@ -69,6 +94,24 @@ public class DownloadController {
         return "redirect:/downloads";
     }
 
+    @PostMapping("/{id}/limit")
+    public String setLimit(@PathVariable UUID id,
+                           @RequestParam long bps,
+                           @AuthenticationPrincipal UserDetails auth) {
+        var user = users.findByUsername(auth.getUsername()).orElseThrow();
+        downloadService.setSpeedLimitForUser(user.getId(), id, bps);
+        return "redirect:/downloads";
+    }
+
+    @PostMapping("/{id}/priority")
+    public String changePriority(@PathVariable UUID id,
+                                 @RequestParam int delta,
+                                 @AuthenticationPrincipal UserDetails auth) {
+        var user = users.findByUsername(auth.getUsername()).orElseThrow();
+        downloadService.changePriorityForUser(user.getId(), id, delta);
+        return "redirect:/downloads";
+    }
+
     @PostMapping("/{id}/delete")
     public String delete(@PathVariable UUID id,
                          @AuthenticationPrincipal UserDetails auth) {
@@ -102,42 +145,29 @@ public class DownloadController {
 
     @GetMapping("/progress")
     @ResponseBody
-    public List<DownloadProgressDto> progress(@AuthenticationPrincipal UserDetails auth) {
+    public List<DownloadProgressDto> progress(@AuthenticationPrincipal UserDetails auth,
+                                              @RequestParam(required = false) DownloadStatus status,
+                                              @RequestParam(required = false) String cursor) {
         var user = users.findByUsername(auth.getUsername()).orElseThrow();
-
-        return downloadService.listByUser(user.getId())
-                .stream()
-                .map(d -> {
-                    var statsOpt = stats.findById(d.getId());
-
-                    double avgSpeed = 0.0;
-                    double maxSpeed = 0.0;
-                    Instant lastStartedAt = null;
-                    Instant lastFinishedAt = null;
-                    int retries = 0;
-
-                    if (statsOpt.isPresent()) {
-                        var s = statsOpt.get();
-                        avgSpeed = s.getAvgSpeedBps();
-                        maxSpeed = s.getMaxSpeedBps();
-                        lastStartedAt = s.getLastStartedAt();
-                        lastFinishedAt = s.getLastFinishedAt();
-                        retries = s.getRetries();
-                    }
-
-                    return new DownloadProgressDto(
-                            d.getId(),
-                            d.getReceivedBytes(),
-                            d.getTotalBytes(),
-                            d.getStatus() != null ? d.getStatus().name() : "QUEUED",
-                            avgSpeed,
-                            maxSpeed,
-                            d.getCreatedAt(),
-                            lastStartedAt,
-                            lastFinishedAt,
-                            retries
-                    );
-                })
+        return page(user.getId(), status, cursor, pageSize).stream()
+                .map(DownloadProgressDto::of)
                 .toList();
     }
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter stream(@AuthenticationPrincipal UserDetails auth,
+                             @RequestParam(required = false) DownloadStatus status,
+                             @RequestParam(required = false) String cursor) {
+        var user = users.findByUsername(auth.getUsername()).orElseThrow();
+        return progressStream.subscribe(user.getId(), () -> page(user.getId(), status, cursor, pageSize));
+    }
+
+    private List<DownloadSummary> page(Long userId, DownloadStatus status, String cursor, int size) {
+        DownloadCursor after = DownloadCursor.parse(cursor);
+        return downloadService.pageForUser(userId, status,
+                after != null ? after.createdAt() : null,
+                after != null ? after.id() : null,
+                size);
+    }
 }
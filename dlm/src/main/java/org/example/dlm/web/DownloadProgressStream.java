@@ -0,0 +1,215 @@
+package org.example.dlm.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.dlm.repo.DownloadRepo;
+import org.example.dlm.repo.DownloadSummary;
+import org.example.dlm.service.DownloadStatusChangedEvent;
+import org.example.dlm.service.progress.ProgressFlusher;
+import org.example.dlm.service.progress.SegmentProgressLedger;
+import org.example.dlm.service.stats.SpeedMeter;
+import org.example.dlm.service.stats.SpeedState;
+import org.example.dlm.web.dto.DownloadProgressDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+@Slf4j
+@Component
+public class DownloadProgressStream {
+
+    private final DownloadRepo downloads;
+    private final SegmentProgressLedger ledger;
+    private final ProgressFlusher progressFlusher;
+    private final SpeedMeter speedMeter;
+    private final long timeoutMs;
+
+    private final Map<Long, Feed> feeds = new ConcurrentHashMap<>();
+
+    public DownloadProgressStream(DownloadRepo downloads,
+                                  SegmentProgressLedger ledger,
+                                  ProgressFlusher progressFlusher,
+                                  SpeedMeter speedMeter,
+                                  @Value("${dlm.sse.timeout-ms:1800000}") long timeoutMs) {
+        this.downloads = downloads;
+        this.ledger = ledger;
+        this.progressFlusher = progressFlusher;
+        this.speedMeter = speedMeter;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public SseEmitter subscribe(Long userId, Supplier<List<DownloadSummary>> page) {
+        progressFlusher.flush();
+        Map<UUID, Row> rows = rows(page.get());
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Client client = new Client(emitter, rows);
+        Feed feed = feeds.compute(userId, (id, f) -> {
+            Feed target = f != null ? f : new Feed(id);
+            target.clients.add(client);
+            return target;
+        });
+
+        Runnable remove = () -> leave(feed, client);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(ex -> remove.run());
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChangedEvent event) {
+        Feed feed = feeds.get(event.userId());
+        if (feed != null) {
+            feed.stale.add(event.downloadId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${dlm.sse.interval-ms:1000}")
+    public void publish() {
+        if (feeds.isEmpty()) {
+            return;
+        }
+        Set<UUID> active = ledger.activeDownloads();
+        for (Feed feed : feeds.values()) {
+            try {
+                publish(feed, active);
+            } catch (Exception ex) {
+                log.warn("[ProgressStream] publish failed for user {}: {}", feed.userId, ex.toString());
+            }
+        }
+    }
+
+    private void publish(Feed feed, Set<UUID> active) {
+        Set<UUID> watched = new HashSet<>();
+        for (Client client : feed.clients) {
+            if (client.initial != null) {
+                client.initial.forEach(feed.rows::putIfAbsent);
+                client.initial = null;
+            }
+            watched.addAll(client.ids);
+        }
+        feed.rows.keySet().retainAll(watched);
+
+        Set<UUID> reload = new HashSet<>();
+        for (UUID id : feed.stale) {
+            if (feed.stale.remove(id) && watched.contains(id)) {
+                reload.add(id);
+            }
+        }
+        for (Row row : feed.rows.values()) {
+            boolean isActive = active.contains(row.id());
+            if (isActive != feed.active.contains(row.id()) || (isActive && row.dto().totalBytes() <= 0)) {
+                reload.add(row.id());
+            }
+        }
+        if (!reload.isEmpty()) {
+            reload.forEach(progressFlusher::flushDownload);
+            Map<UUID, Row> fresh = rows(downloads.findSummaries(reload));
+            reload.removeAll(fresh.keySet());
+            reload.forEach(feed.rows::remove);
+            feed.rows.putAll(fresh);
+        }
+        feed.active = active;
+
+        Map<UUID, DownloadProgressDto> frame = new HashMap<>();
+        for (Row row : feed.rows.values()) {
+            frame.put(row.id(), live(row, active.contains(row.id())));
+        }
+
+        for (Client client : feed.clients) {
+            List<DownloadProgressDto> delta = new ArrayList<>();
+            for (UUID id : client.ids) {
+                DownloadProgressDto dto = frame.get(id);
+                if (dto != null && !dto.equals(client.sent.get(id))) {
+                    delta.add(dto);
+                }
+            }
+            if (delta.isEmpty()) {
+                continue;
+            }
+            try {
+                client.emitter.send(SseEmitter.event().name("progress").data(delta, MediaType.APPLICATION_JSON));
+                delta.forEach(dto -> client.sent.put(dto.id(), dto));
+            } catch (Exception ex) {
+                log.debug("[ProgressStream] client of user {} gone: {}", feed.userId, ex.toString());
+                leave(feed, client);
+            }
+        }
+    }
+
+    private DownloadProgressDto live(Row row, boolean active) {
+        DownloadProgressDto dto = row.dto();
+        long received = dto.receivedBytes();
+        if (active) {
+            received += ledger.writtenFor(row.id()) - row.writtenAtLoad();
+            if (dto.totalBytes() > 0) {
+                received = Math.min(received, dto.totalBytes());
+            }
+        }
+
+        SpeedState speed = speedMeter.getState(row.id()).orElse(null);
+        double avg = speed != null ? speed.getAvgSpeedBps() : 0.0;
+        double max = speed != null ? Math.max(dto.maxSpeedBps(), speed.getMaxSpeedBps()) : dto.maxSpeedBps();
+
+        return new DownloadProgressDto(dto.id(), received, dto.totalBytes(), dto.status(),
+                avg, max, dto.createdAt(), dto.lastStartedAt(), dto.lastFinishedAt(), dto.retries());
+    }
+
+    private Map<UUID, Row> rows(List<DownloadSummary> summaries) {
+        Map<UUID, Row> rows = new HashMap<>();
+        for (DownloadSummary summary : summaries) {
+            rows.put(summary.getId(), new Row(DownloadProgressDto.of(summary), ledger.writtenFor(summary.getId())));
+        }
+        return rows;
+    }
+
+    private void leave(Feed feed, Client client) {
+        feed.clients.remove(client);
+        feeds.computeIfPresent(feed.userId, (id, f) -> f.clients.isEmpty() ? null : f);
+    }
+
+    private record Row(DownloadProgressDto dto, long writtenAtLoad) {
+        UUID id() {
+            return dto.id();
+        }
+    }
+
+    private static final class Feed {
+        private final Long userId;
+        private final List<Client> clients = new CopyOnWriteArrayList<>();
+        private final Set<UUID> stale = ConcurrentHashMap.newKeySet();
+        private final Map<UUID, Row> rows = new HashMap<>();
+        private Set<UUID> active = Set.of();
+
+        private Feed(Long userId) {
+            this.userId = userId;
+        }
+    }
+
+    private static final class Client {
+        private final SseEmitter emitter;
+        private final Set<UUID> ids;
+        private final Map<UUID, DownloadProgressDto> sent = new HashMap<>();
+        private volatile Map<UUID, Row> initial;
+
+        private Client(SseEmitter emitter, Map<UUID, Row> initial) {
+            this.emitter = emitter;
+            this.ids = Set.copyOf(initial.keySet());
+            this.initial = initial;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.example.dlm.web;
 
 import lombok.RequiredArgsConstructor;
+import org.example.dlm.domain.QueuePolicy;
 import org.example.dlm.domain.Settings;
 import org.example.dlm.repo.UserRepo;
 import org.example.dlm.service.SettingsService;
@@ -23,15 +24,18 @@ public class SettingsController {
         var user = users.findByUsername(auth.getUsername()).orElseThrow();
         Settings settings = settingsService.getOrCreate(user.getId());
         model.addAttribute("settings", settings);
+        model.addAttribute("queuePolicies", QueuePolicy.values());
         return "settings/form";
     }
 
     @PostMapping
     public String save(@AuthenticationPrincipal UserDetails auth,
                        @RequestParam int defaultSegments,
-                       @RequestParam long globalSpeedLimitBps) {
+                       @RequestParam long globalSpeedLimitBps,
+                       @RequestParam(defaultValue = "false") boolean adaptiveSegments,
+                       @RequestParam(defaultValue = "FIFO") QueuePolicy queuePolicy) {
         var user = users.findByUsername(auth.getUsername()).orElseThrow();
-        settingsService.update(user.getId(), defaultSegments, globalSpeedLimitBps);
+        settingsService.update(user.getId(), defaultSegments, globalSpeedLimitBps, adaptiveSegments, queuePolicy);
         return "redirect:/settings?saved";
     }
 }
@@ -0,0 +1,29 @@
+package org.example.dlm.web.dto;
+
+import org.example.dlm.repo.DownloadSummary;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record DownloadCursor(Instant createdAt, UUID id) {
+
+    public static DownloadCursor after(DownloadSummary last) {
+        return new DownloadCursor(last.getCreatedAt(), last.getId());
+    }
+
+    public static DownloadCursor parse(String value) {
+        if (value == null || value.isBlank()) return null;
+        int sep = value.lastIndexOf('_');
+        if (sep <= 0) return null;
+        try {
+            return new DownloadCursor(Instant.parse(value.substring(0, sep)), UUID.fromString(value.substring(sep + 1)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createdAt + "_" + id;
+    }
+}
@@ -5,4 +5,5 @@ import lombok.Data;
 @Data
 public class DownloadForm {
     private String url;
+    private String sha256;
 }
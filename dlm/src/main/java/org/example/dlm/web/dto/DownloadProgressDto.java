@@ -1,5 +1,7 @@
 package org.example.dlm.web.dto;
 
+import org.example.dlm.repo.DownloadSummary;
+
 import java.time.Instant;
 import java.util.UUID;
 
@@ -14,4 +16,20 @@ public record DownloadProgressDto(
         Instant lastStartedAt,
         Instant lastFinishedAt,
         int retries
-) {}
+) {
+
+    public static DownloadProgressDto of(DownloadSummary s) {
+        return new DownloadProgressDto(
+                s.getId(),
+                s.getReceivedBytes(),
+                s.getTotalBytes(),
+                s.getStatus() != null ? s.getStatus().name() : "QUEUED",
+                s.getAvgSpeedBps(),
+                s.getMaxSpeedBps(),
+                s.getCreatedAt(),
+                s.getLastStartedAt(),
+                s.getLastFinishedAt(),
+                s.getRetries()
+        );
+    }
+}
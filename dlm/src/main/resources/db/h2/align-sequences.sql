@@ -0,0 +1 @@
+ALTER SEQUENCE segments_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM segments);
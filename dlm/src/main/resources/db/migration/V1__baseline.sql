@@ -0,0 +1,64 @@
+create table users (
+    id            bigint generated by default as identity primary key,
+    username      varchar(255) not null unique,
+    password_hash varchar(255) not null
+);
+
+create table settings (
+    id                     bigint generated by default as identity primary key,
+    user_id                bigint unique references users (id),
+    default_segments       integer not null,
+    global_speed_limit_bps bigint  not null,
+    adaptive_segments      boolean not null,
+    queue_policy           varchar(32)
+);
+
+create table downloads (
+    id              uuid primary key,
+    url             varchar(2048) not null,
+    file_name       varchar(255),
+    save_path       varchar(255),
+    total_bytes     bigint  not null,
+    received_bytes  bigint  not null,
+    speed_limit_bps bigint  not null,
+    priority        integer not null,
+    expected_sha256 varchar(64),
+    etag            varchar(512),
+    status          varchar(32),
+    created_at      timestamp(6) with time zone,
+    updated_at      timestamp(6) with time zone,
+    owner_id        bigint not null references users (id)
+);
+
+create index idx_downloads_owner_created on downloads (owner_id, created_at);
+create index idx_downloads_owner_status_created on downloads (owner_id, status, created_at);
+
+create table stats (
+    download_id      uuid primary key references downloads (id),
+    avg_speed_bps    double precision not null,
+    max_speed_bps    double precision not null,
+    retries          integer not null,
+    host             varchar(255),
+    segment_count    integer not null,
+    last_started_at  timestamp(6) with time zone,
+    last_finished_at timestamp(6) with time zone
+);
+
+create index idx_stats_host_started on stats (host, last_started_at);
+
+-- pooled-lo: each nextval reserves the ids [value, value + 49] for one JVM
+create sequence segments_seq start with 1 increment by 50;
+
+create table segments (
+    id             bigint primary key,
+    download_id    uuid    not null references downloads (id),
+    idx            integer not null,
+    start_byte     bigint  not null,
+    end_byte       bigint  not null,
+    received_bytes bigint  not null,
+    sha256         varchar(64),
+    status         varchar(32),
+    constraint uk_segments_download_idx unique (download_id, idx)
+);
+
+create index idx_segments_download_status_start on segments (download_id, status, start_byte);
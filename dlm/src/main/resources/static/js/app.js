@@ -135,7 +135,7 @@
         return d.toLocaleTimeString('uk-UA', {hour: '2-digit', minute: '2-digit'});
     }
 
-    // ПОЛЛІНГ ПРОГРЕСУ ДЛЯ СТОРІНКИ /downloads
+    // ПРОГРЕС ДЛЯ СТОРІНКИ /downloads (SSE, з поллінгом як запасним варіантом)
 
     const page = document.body.getAttribute('data-page');
 
@@ -151,68 +151,81 @@
 
         const ALLOW_DELETE = ['COMPLETED', 'CANCELED', 'ERROR'];
 
+        function applyProgress(item) {
+            const row = document.querySelector(`tr[data-download-id="${item.id}"]`);
+            if (!row) return;
+
+            const recSpan = row.querySelector('.progress__nums .js-rec');
+            const totSpan = row.querySelector('.progress__nums .js-tot');
+            if (recSpan) recSpan.textContent = item.receivedBytes;
+            if (totSpan) totSpan.textContent = item.totalBytes;
+
+            const bar = row.querySelector('.progress__bar-fill');
+            if (bar) {
+                bar.setAttribute('data-received', item.receivedBytes);
+                bar.setAttribute('data-total', item.totalBytes);
+            }
+
+            const badge = row.querySelector('.badge');
+            if (badge) {
+                badge.textContent = item.status;
+
+                BADGE_CLASSES.forEach(c => badge.classList.remove(c));
+                let cls = 'badge--default';
+                if (item.status === 'RUNNING') cls = 'badge--running';
+                else if (item.status === 'PAUSED') cls = 'badge--paused';
+                else if (item.status === 'CANCELED') cls = 'badge--canceled';
+                badge.classList.add(cls);
+            }
+
+            const deleteForm = row.querySelector('.js-delete-form');
+            if (deleteForm) {
+                const canDelete = ALLOW_DELETE.includes(item.status);
+                deleteForm.classList.toggle('is-hidden', !canDelete);
+            }
+
+            const currentEl = row.querySelector('.js-speed-current');
+            const maxEl = row.querySelector('.js-speed-max');
+            const startEl = row.querySelector('.js-start-time');
+            const lastStartEl = row.querySelector('.js-last-start');
+            const finishEl = row.querySelector('.js-finish-time');
+            const retriesEl = row.querySelector('.js-retries');
+
+            if (currentEl) currentEl.textContent = formatSpeed(item.avgSpeedBps);
+            if (maxEl) maxEl.textContent = formatSpeed(item.maxSpeedBps);
+            if (startEl) startEl.textContent = formatTime(item.createdAt);
+            if (lastStartEl) lastStartEl.textContent = formatTime(item.lastStartedAt);
+            if (finishEl) finishEl.textContent = formatTime(item.lastFinishedAt);
+            if (retriesEl) retriesEl.textContent = (item.retries ?? 0);
+        }
+
         async function pollProgress() {
             try {
-                const resp = await fetch('/downloads/progress', {
+                const resp = await fetch('/downloads/progress' + window.location.search, {
                     headers: {'Accept': 'application/json'}
                 });
                 if (!resp.ok) return;
                 const data = await resp.json(); // масив DTO
-
-                data.forEach(item => {
-                    const row = document.querySelector(`tr[data-download-id="${item.id}"]`);
-                    if (!row) return;
-
-                    const recSpan = row.querySelector('.progress__nums .js-rec');
-                    const totSpan = row.querySelector('.progress__nums .js-tot');
-                    if (recSpan) recSpan.textContent = item.receivedBytes;
-                    if (totSpan) totSpan.textContent = item.totalBytes;
-
-                    const bar = row.querySelector('.progress__bar-fill');
-                    if (bar) {
-                        bar.setAttribute('data-received', item.receivedBytes);
-                        bar.setAttribute('data-total', item.totalBytes);
-                    }
-
-                    const badge = row.querySelector('.badge');
-                    if (badge) {
-                        badge.textContent = item.status;
-
-                        BADGE_CLASSES.forEach(c => badge.classList.remove(c));
-                        let cls = 'badge--default';
-                        if (item.status === 'RUNNING') cls = 'badge--running';
-                        else if (item.status === 'PAUSED') cls = 'badge--paused';
-                        else if (item.status === 'CANCELED') cls = 'badge--canceled';
-                        badge.classList.add(cls);
-                    }
-
-                    const deleteForm = row.querySelector('.js-delete-form');
-                    if (deleteForm) {
-                        const canDelete = ALLOW_DELETE.includes(item.status);
-                        deleteForm.classList.toggle('is-hidden', !canDelete);
-                    }
-
-                    const currentEl = row.querySelector('.js-speed-current');
-                    const maxEl = row.querySelector('.js-speed-max');
-                    const startEl = row.querySelector('.js-start-time');
-                    const lastStartEl = row.querySelector('.js-last-start');
-                    const finishEl = row.querySelector('.js-finish-time');
-                    const retriesEl = row.querySelector('.js-retries');
-
-                    if (currentEl) currentEl.textContent = formatSpeed(item.avgSpeedBps);
-                    if (maxEl) maxEl.textContent = formatSpeed(item.maxSpeedBps);
-                    if (startEl) startEl.textContent = formatTime(item.createdAt);
-                    if (lastStartEl) lastStartEl.textContent = formatTime(item.lastStartedAt);
-                    if (finishEl) finishEl.textContent = formatTime(item.lastFinishedAt);
-                    if (retriesEl) retriesEl.textContent = (item.retries ?? 0);
-                });
-
+                data.forEach(applyProgress);
                 updateProgressBars();
             } catch (e) {
                 console.error('progress poll failed', e);
             }
         }
 
-        setInterval(pollProgress, POLL_INTERVAL_MS);
+        if ('EventSource' in window) {
+            // сервер надсилає лише змінені рядки; EventSource сам перепідключається
+            const source = new EventSource('/downloads/stream' + window.location.search);
+            source.addEventListener('progress', (e) => {
+                try {
+                    JSON.parse(e.data).forEach(applyProgress);
+                    updateProgressBars();
+                } catch (err) {
+                    console.error('progress event failed', err);
+                }
+            });
+        } else {
+            setInterval(pollProgress, POLL_INTERVAL_MS);
+        }
     }
 })();
@@ -0,0 +1,31 @@
+package org.example.dlm;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// H2 in PostgreSQL mode stands in for a server: Flyway builds the schema and Hibernate validates it
+@ActiveProfiles("postgres")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pgprofile;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+class PostgresProfileTests {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void migrationsMatchTheMapping() {
+        assertEquals(1, jdbc.queryForObject(
+                "select count(*) from flyway_schema_history where success and version = '1'", Integer.class));
+        assertEquals(50L, jdbc.queryForObject(
+                "select increment from information_schema.sequences where sequence_name = 'segments_seq'", Long.class));
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.dlm.load;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.QueuePolicy;
+import org.example.dlm.repo.DownloadRepo;
+import org.example.dlm.service.DownloadService;
+import org.example.dlm.service.DownloadStatusChangedEvent;
+import org.example.dlm.service.SettingsService;
+import org.example.dlm.service.UserService;
+import org.example.dlm.support.LoopbackRangeServer;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * mvn -B test -Dtest=EngineLoadTest -Ddlm.loadtest=true
+ *     [-Ddlm.loadtest.levels=1,10,100] [-Ddlm.loadtest.size-mb=8] [-Ddlm.loadtest.segments=4]
+ *     [-Ddlm.loadtest.latency-ms=0] [-Ddlm.loadtest.bandwidth-bps=0]
+ *     [-Ddlm.loadtest.fail-every=0] [-Ddlm.loadtest.reset-probability=0] [-Ddlm.loadtest.timeout-s=300]
+ */
+@EnabledIfSystemProperty(named = "dlm.loadtest", matches = "true")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.example.dlm.service=WARN",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "dlm.queue.max-active-per-user=0",
+        "dlm.queue.max-segments-per-user=0",
+        "dlm.queue.admit-interval-ms=50",
+        "dlm.retry.base-delay-ms=50",
+        "dlm.retry.max-delay-ms=1000"
+})
+class EngineLoadTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private static LoopbackRangeServer server;
+
+    @Autowired
+    private DownloadService downloadService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private SettingsService settingsService;
+    @Autowired
+    private DownloadRepo downloads;
+    @Autowired
+    private EntityManagerFactory emf;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private FinishedDownloads finished;
+
+    @TestConfiguration
+    static class FinishedDownloads {
+
+        private final Set<UUID> finished = ConcurrentHashMap.newKeySet();
+
+        boolean all(List<UUID> ids) {
+            return finished.containsAll(ids);
+        }
+
+        @EventListener
+        void onStatusChanged(DownloadStatusChangedEvent event) {
+            if (event.status() == DownloadStatus.COMPLETED || event.status() == DownloadStatus.ERROR) {
+                finished.add(event.downloadId());
+            }
+        }
+    }
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new LoopbackRangeServer()
+                .latency(Long.getLong("dlm.loadtest.latency-ms", 0))
+                .bandwidthPerConnection(Long.getLong("dlm.loadtest.bandwidth-bps", 0))
+                .failEvery(Integer.getInteger("dlm.loadtest.fail-every", 0))
+                .resetProbability(Double.parseDouble(System.getProperty("dlm.loadtest.reset-probability", "0")))
+                .start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void throughputAtIncreasingConcurrency() throws Exception {
+        long size = Long.getLong("dlm.loadtest.size-mb", 8) * MB;
+        int segments = Integer.getInteger("dlm.loadtest.segments", 4);
+        int[] levels = Arrays.stream(System.getProperty("dlm.loadtest.levels", "1,10,100").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+
+        jdbc.execute("SET QUERY_STATISTICS_MAX_ENTRIES 10000");
+        jdbc.execute("SET QUERY_STATISTICS TRUE");
+
+        List<Run> runs = new ArrayList<>();
+        for (int level : levels) {
+            runs.add(run(level, size, segments));
+        }
+
+        System.out.printf("%n[LoadTest] size=%d MiB segments=%d latency=%s ms bandwidth=%s B/s failEvery=%s resetP=%s%n",
+                size / MB, segments,
+                System.getProperty("dlm.loadtest.latency-ms", "0"),
+                System.getProperty("dlm.loadtest.bandwidth-bps", "0"),
+                System.getProperty("dlm.loadtest.fail-every", "0"),
+                System.getProperty("dlm.loadtest.reset-probability", "0"));
+        System.out.printf("%-6s %9s %9s %10s %10s %10s %9s %9s %10s %10s %8s%n",
+                "conc", "wall ms", "MB/s", "ttfb p50", "ttfb p95", "ttfb max",
+                "hib stmt", "db exec", "alloc MB", "alloc MB/s", "faults");
+        for (Run r : runs) {
+            System.out.printf("%-6d %9d %9.1f %10.1f %10.1f %10.1f %9d %9d %10.1f %10.1f %8d%n",
+                    r.concurrency, r.wallMs, r.mbPerSecond(), r.ttfbMs[0], r.ttfbMs[1], r.ttfbMs[2],
+                    r.hibernateStatements, r.dbExecutions, r.allocatedBytes / (double) MB,
+                    r.allocatedBytes / (double) MB / (r.wallMs / 1000.0), r.faults);
+        }
+        for (Run r : runs) {
+            assertEquals(Map.of(DownloadStatus.COMPLETED, r.concurrency), r.outcome,
+                    "downloads at concurrency " + r.concurrency);
+        }
+    }
+
+    private Run run(int concurrency, long size, int segments) throws Exception {
+        var user = userService.register("load" + concurrency + "_" + System.nanoTime() % 1_000_000, "secret1");
+        settingsService.update(user.getId(), segments, 0, false, QueuePolicy.FIFO);
+
+        Path home = Files.createTempDirectory("dlm-load-" + concurrency);
+        System.setProperty("user.home", home.toString());
+
+        Statistics hibernate = emf.unwrap(SessionFactory.class).getStatistics();
+        hibernate.clear();
+        jdbc.execute("SET QUERY_STATISTICS FALSE");
+        jdbc.execute("SET QUERY_STATISTICS TRUE");
+        long faultsBefore = server.faults();
+        long allocBefore = allocatedBytes();
+
+        String prefix = "c" + concurrency + "-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+        List<UUID> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Long> submittedAt = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            String name = prefix + i + ".bin";
+            submittedAt.add(System.nanoTime());
+            ids.add(downloadService.addUrl(user.getId(), server.url(name, size)).getId());
+            names.add(name);
+        }
+
+        long deadline = System.currentTimeMillis() + Long.getLong("dlm.loadtest.timeout-s", 300) * 1000;
+        while (System.currentTimeMillis() < deadline && !finished.all(ids)) {
+            Thread.sleep(10);
+        }
+        long wallNanos = System.nanoTime() - started;
+        long hibernateStatements = hibernate.getPrepareStatementCount();
+        long dbExecutions = jdbc.queryForObject(
+                "SELECT COALESCE(SUM(EXECUTION_COUNT), 0) FROM INFORMATION_SCHEMA.QUERY_STATISTICS", Long.class);
+
+        double[] ttfb = new double[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            Long first = server.firstByteNanos(names.get(i));
+            ttfb[i] = first == null ? Double.NaN : (first - submittedAt.get(i)) / 1e6;
+        }
+        Arrays.sort(ttfb);
+
+        Map<DownloadStatus, Integer> outcome = new EnumMap<>(DownloadStatus.class);
+        for (Download d : downloads.findAllById(ids)) {
+            outcome.merge(d.getStatus(), 1, Integer::sum);
+            if (d.getStatus() == DownloadStatus.COMPLETED) {
+                assertEquals(size, Files.size(downloadService.pathFor(d)), "size of " + d.getFileName());
+            }
+        }
+
+        return new Run(concurrency, size, wallNanos / 1_000_000,
+                new double[]{percentile(ttfb, 0.50), percentile(ttfb, 0.95), ttfb[concurrency - 1]},
+                hibernateStatements, dbExecutions,
+                allocatedBytes() - allocBefore, server.faults() - faultsBefore, Map.copyOf(outcome));
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static long allocatedBytes() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getTotalThreadAllocatedBytes();
+    }
+
+    private record Run(int concurrency, long size, long wallMs, double[] ttfbMs,
+                       long hibernateStatements, long dbExecutions, long allocatedBytes,
+                       long faults, Map<DownloadStatus, Integer> outcome) {
+
+        double mbPerSecond() {
+            return concurrency * size / (double) MB / Math.max(1, wallMs) * 1000.0;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.dlm.repo;
+
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.User;
+import org.example.dlm.web.dto.DownloadCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(showSql = false)
+class DownloadRepoTests {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T10:00:00Z");
+
+    @Autowired
+    private DownloadRepo downloads;
+    @Autowired
+    private UserRepo users;
+
+    private Long ownerId;
+
+    @BeforeEach
+    void setUp() {
+        var owner = new User();
+        owner.setUsername("pager");
+        owner.setPasswordHash("x");
+        ownerId = users.save(owner).getId();
+
+        // seven rows share one timestamp, so only the id tie-break keeps pages apart
+        for (int i = 0; i < 7; i++) {
+            save(owner, T0, i % 2 == 0 ? DownloadStatus.COMPLETED : DownloadStatus.PAUSED);
+        }
+        save(owner, T0.plusSeconds(5), DownloadStatus.COMPLETED);
+        save(owner, T0.minusSeconds(5), DownloadStatus.PAUSED);
+    }
+
+    @Test
+    void cursorPagesMatchTheFullOrderingWithoutGapsOrRepeats() {
+        List<UUID> all = ids(downloads.findPage(ownerId, null, null, null, Limit.of(100)));
+        assertEquals(9, all.size());
+
+        List<UUID> paged = pageThrough(null, 2);
+
+        assertEquals(all, paged);
+        assertEquals(paged.size(), new HashSet<>(paged).size());
+        assertEquals(paged, pageThrough(null, 2));
+        assertEquals(all, pageThrough(null, 3));
+    }
+
+    @Test
+    void statusFilterKeepsTheSameTieBreak() {
+        List<UUID> all = ids(downloads.findPage(ownerId, DownloadStatus.PAUSED, null, null, Limit.of(100)));
+        assertEquals(4, all.size());
+
+        assertEquals(all, pageThrough(DownloadStatus.PAUSED, 1));
+    }
+
+    @Test
+    void pagesAreOrderedNewestFirst() {
+        List<DownloadSummary> page = downloads.findPage(ownerId, null, null, null, Limit.of(100));
+        for (int i = 1; i < page.size(); i++) {
+            assertTrue(!page.get(i).getCreatedAt().isAfter(page.get(i - 1).getCreatedAt()));
+        }
+    }
+
+    private List<UUID> pageThrough(DownloadStatus status, int size) {
+        List<UUID> seen = new ArrayList<>();
+        DownloadCursor cursor = null;
+        while (true) {
+            List<DownloadSummary> page = downloads.findPage(ownerId, status,
+                    cursor != null ? cursor.createdAt() : null,
+                    cursor != null ? cursor.id() : null,
+                    Limit.of(size));
+            seen.addAll(ids(page));
+            if (page.size() < size) {
+                return seen;
+            }
+            cursor = DownloadCursor.parse(DownloadCursor.after(page.get(page.size() - 1)).toString());
+        }
+    }
+
+    private void save(User owner, Instant createdAt, DownloadStatus status) {
+        var d = new Download();
+        d.setId(UUID.randomUUID());
+        d.setUrl("http://example.test/" + d.getId());
+        d.setOwner(owner);
+        d.setStatus(status);
+        d.setCreatedAt(createdAt);
+        d.setUpdatedAt(createdAt);
+        downloads.save(d);
+    }
+
+    private static List<UUID> ids(List<DownloadSummary> page) {
+        return page.stream().map(DownloadSummary::getId).toList();
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.dlm.repo;
+
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+import org.example.dlm.domain.User;
+import org.example.dlm.iterator.DbSegmentCollection;
+import org.example.dlm.iterator.SegmentIterator;
+import org.example.dlm.iterator.SegmentOrder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(showSql = false)
+class SegmentRepoTests {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T10:00:00Z");
+
+    @Autowired
+    private SegmentRepo segments;
+    @Autowired
+    private DownloadRepo downloads;
+    @Autowired
+    private UserRepo users;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        var u = new User();
+        u.setUsername("segments");
+        u.setPasswordHash("x");
+        owner = users.save(u);
+    }
+
+    @Test
+    void tallyMatchesTheInMemoryCount() {
+        Download d = mixedDownload();
+
+        assertTally(SegmentTally.of(segments.findByDownload_Id(d.getId())), segments.tally(d.getId()));
+        assertTrue(segments.tally(d.getId()).isRangeSupported());
+    }
+
+    @Test
+    void tallyOfUnboundedAndEmptyDownloadsIsNotRangeSupported() {
+        Download unbounded = download();
+        save(unbounded, 0, 0, -1, 4096, SegmentStatus.PENDING);
+        Download empty = download();
+
+        SegmentTally single = segments.tally(unbounded.getId());
+        assertTally(SegmentTally.of(segments.findByDownload_Id(unbounded.getId())), single);
+        assertEquals(1, single.getUnbounded());
+        assertFalse(single.isRangeSupported());
+
+        SegmentTally none = segments.tally(empty.getId());
+        assertTally(SegmentTally.of(List.of()), none);
+        assertFalse(none.isRangeSupported());
+    }
+
+    @Test
+    void pendingOrderAndLimitMatchTheInMemoryIterator() {
+        Download d = mixedDownload();
+
+        for (SegmentOrder order : SegmentOrder.values()) {
+            for (int limit : new int[]{1, 3, 5, 10}) {
+                assertEquals(expectedIds(d, order, limit),
+                        ids(segments.findPending(d.getId(), order, Limit.of(limit))),
+                        order + " limit " + limit);
+            }
+        }
+    }
+
+    @Test
+    void unboundedPendingSegmentCountsAsNothingRemaining() {
+        Download d = download();
+        save(d, 0, 0, 9_999, 0, SegmentStatus.PENDING);
+        save(d, 1, 10_000, 9_999, 4096, SegmentStatus.PENDING);
+
+        assertEquals(expectedIds(d, SegmentOrder.BY_SMALLEST_REMAINING, 2),
+                ids(segments.findPending(d.getId(), SegmentOrder.BY_SMALLEST_REMAINING, Limit.of(2))));
+        assertEquals(1, segments.findPending(d.getId(), SegmentOrder.BY_SMALLEST_REMAINING, Limit.of(1)).get(0).getIdx());
+    }
+
+    @Test
+    void nullOrderFallsBackToIndexOrder() {
+        Download d = mixedDownload();
+
+        assertEquals(expectedIds(d, SegmentOrder.BY_INDEX_ASC, 10),
+                ids(segments.findPending(d.getId(), null, Limit.of(10))));
+    }
+
+    @Test
+    void emptyDownloadHasNoPendingSegments() {
+        Download d = download();
+
+        for (SegmentOrder order : SegmentOrder.values()) {
+            assertTrue(segments.findPending(d.getId(), order, Limit.of(5)).isEmpty());
+        }
+    }
+
+    private Download mixedDownload() {
+        Download d = download();
+        save(d, 5, 4500, 4999, 300, SegmentStatus.ERROR);
+        save(d, 2, 2000, 2999, 0, SegmentStatus.PENDING);
+        save(d, 7, 5800, 5999, 100, SegmentStatus.PENDING);
+        save(d, 0, 0, 999, 1000, SegmentStatus.DONE);
+        save(d, 6, 5000, 5799, 0, SegmentStatus.PENDING);
+        save(d, 3, 3000, 3999, 500, SegmentStatus.RUNNING);
+        save(d, 1, 1000, 1999, 200, SegmentStatus.PENDING);
+        save(d, 4, 4000, 4499, 0, SegmentStatus.PENDING);
+        save(d, 8, 6000, 6999, 0, SegmentStatus.CANCELED);
+        return d;
+    }
+
+    private List<Long> expectedIds(Download d, SegmentOrder order, int limit) {
+        SegmentIterator it = new DbSegmentCollection(segments.findByDownload_Id(d.getId()), order, true).iterator();
+        List<Long> ids = new ArrayList<>();
+        while (it.hasNext() && ids.size() < limit) {
+            ids.add(it.next().getId());
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(List<Segment> list) {
+        return list.stream().map(Segment::getId).toList();
+    }
+
+    private static void assertTally(SegmentTally expected, SegmentTally actual) {
+        assertEquals(expected.getTotal(), actual.getTotal(), "total");
+        assertEquals(expected.getRunning(), actual.getRunning(), "running");
+        assertEquals(expected.getUnfinished(), actual.getUnfinished(), "unfinished");
+        assertEquals(expected.getUnbounded(), actual.getUnbounded(), "unbounded");
+        assertEquals(expected.getReceivedBytes(), actual.getReceivedBytes(), "receivedBytes");
+        assertEquals(expected.isRangeSupported(), actual.isRangeSupported(), "rangeSupported");
+    }
+
+    private Download download() {
+        var d = new Download();
+        d.setId(UUID.randomUUID());
+        d.setUrl("http://example.test/" + d.getId());
+        d.setOwner(owner);
+        d.setStatus(DownloadStatus.RUNNING);
+        d.setCreatedAt(T0);
+        return downloads.saveAndFlush(d);
+    }
+
+    private void save(Download d, int idx, long start, long end, long received, SegmentStatus status) {
+        var s = new Segment();
+        s.setDownload(d);
+        s.setIdx(idx);
+        s.setStartByte(start);
+        s.setEndByte(end);
+        s.setReceivedBytes(received);
+        s.setStatus(status);
+        segments.saveAndFlush(s);
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.dlm.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BandwidthLimiterTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void bucketRefillsAtItsRate() {
+        var bucket = new BandwidthLimiter.TokenBucket(1000, 1000);
+        long t0 = System.nanoTime();
+
+        assertEquals(0, bucket.reserve(1000, t0));
+        assertEquals(SECOND / 2, bucket.reserve(500, t0));
+        assertEquals(0, bucket.reserve(500, t0 + SECOND));
+        assertEquals(SECOND / 4, bucket.reserve(250, t0 + SECOND));
+    }
+
+    @Test
+    void idleBucketNeverHoldsMoreThanOneBurst() {
+        var bucket = new BandwidthLimiter.TokenBucket(1000, 200);
+        long later = System.nanoTime() + 10 * SECOND;
+
+        assertEquals(0, bucket.reserve(200, later));
+        assertEquals(SECOND / 1000, bucket.reserve(1, later));
+    }
+
+    @Test
+    void unlimitedBucketNeverWaits() {
+        var bucket = new BandwidthLimiter.TokenBucket(0, 1000);
+        assertEquals(0, bucket.reserve(Long.MAX_VALUE / 2, System.nanoTime()));
+    }
+
+    @Test
+    void downloadLimitThrottlesBelowUserAndGlobal() throws Exception {
+        var limiter = new BandwidthLimiter(1_000_000, 100);
+        UUID download = UUID.randomUUID();
+        limiter.setUserLimit(1L, 1_000_000);
+        limiter.setDownloadLimit(download, 1000);
+
+        limiter.acquire(1L, download, 100, () -> true);
+        long started = System.nanoTime();
+        limiter.acquire(1L, download, 200, () -> true);
+        assertWaited(started, 200);
+    }
+
+    @Test
+    void userLimitIsSharedByTheUsersDownloads() throws Exception {
+        var limiter = new BandwidthLimiter(1_000_000, 100);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        limiter.setUserLimit(1L, 1000);
+        limiter.setDownloadLimit(first, 1_000_000);
+        limiter.setDownloadLimit(second, 1_000_000);
+
+        limiter.acquire(1L, first, 100, () -> true);
+        long started = System.nanoTime();
+        limiter.acquire(1L, second, 200, () -> true);
+        assertWaited(started, 200);
+    }
+
+    @Test
+    void globalLimitThrottlesEveryUser() throws Exception {
+        var limiter = new BandwidthLimiter(1000, 100);
+
+        limiter.acquire(1L, UUID.randomUUID(), 100, () -> true);
+        long started = System.nanoTime();
+        limiter.acquire(2L, UUID.randomUUID(), 200, () -> true);
+        assertWaited(started, 200);
+    }
+
+    @Test
+    void limitChangeReleasesWaiters() throws Exception {
+        var limiter = new BandwidthLimiter(0, 100);
+        UUID download = UUID.randomUUID();
+        limiter.setUserLimit(1L, 100);
+        limiter.acquire(1L, download, 10, () -> true);
+
+        long started = System.nanoTime();
+        var waiter = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire(1L, download, 1000, () -> true);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(150);
+        limiter.setUserLimit(1L, 0);
+
+        waiter.get(2, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - started < 2 * SECOND, "waiter should not sleep out the 10 s reservation");
+    }
+
+    @Test
+    void abandonedWaitReturnsEarly() throws Exception {
+        var limiter = new BandwidthLimiter(100, 100);
+        limiter.acquire(1L, UUID.randomUUID(), 10, () -> true);
+
+        long started = System.nanoTime();
+        limiter.acquire(1L, UUID.randomUUID(), 1000, () -> false);
+        assertTrue(System.nanoTime() - started < SECOND);
+    }
+
+    private static void assertWaited(long startedNanos, long expectedMs) {
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        assertTrue(waitedMs >= expectedMs - 20, "waited " + waitedMs + " ms, expected about " + expectedMs);
+        assertTrue(waitedMs < expectedMs + 1000, "waited " + waitedMs + " ms, expected about " + expectedMs);
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.dlm.service;
+
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.QueuePolicy;
+import org.example.dlm.domain.User;
+import org.example.dlm.repo.DownloadRepo;
+import org.example.dlm.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(showSql = false, properties = {
+        "dlm.queue.max-active-per-user=2",
+        "dlm.queue.max-segments-per-user=0"
+})
+@Import({DownloadQueue.class, SettingsService.class, BandwidthLimiter.class})
+@RecordApplicationEvents
+class DownloadQueueTests {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T10:00:00Z");
+
+    @Autowired
+    private DownloadQueue queue;
+    @Autowired
+    private SettingsService settings;
+    @Autowired
+    private DownloadRepo downloads;
+    @Autowired
+    private UserRepo users;
+    @Autowired
+    private ApplicationEvents events;
+
+    @Test
+    void admitsUpToTheActiveLimitOfEachUser() {
+        User alice = user("alice");
+        User bob = user("bob");
+        save(alice, DownloadStatus.RUNNING, 0, 0, 1000, 0);
+        for (int i = 1; i <= 3; i++) {
+            save(alice, DownloadStatus.QUEUED, 0, i, 1000, 0);
+            save(bob, DownloadStatus.QUEUED, 0, i, 1000, 0);
+        }
+
+        queueChanged(alice);
+        queueChanged(bob);
+        queue.admitPending();
+
+        assertEquals(2, downloads.countByOwner_IdAndStatus(alice.getId(), DownloadStatus.RUNNING));
+        assertEquals(2, downloads.countByOwner_IdAndStatus(alice.getId(), DownloadStatus.QUEUED));
+        assertEquals(2, downloads.countByOwner_IdAndStatus(bob.getId(), DownloadStatus.RUNNING));
+        assertEquals(1, downloads.countByOwner_IdAndStatus(bob.getId(), DownloadStatus.QUEUED));
+    }
+
+    @Test
+    void fifoAdmitsByPriorityThenAge() {
+        User owner = user("fifo");
+        save(owner, DownloadStatus.QUEUED, 0, 1, 1000, 0);
+        UUID urgent = save(owner, DownloadStatus.QUEUED, 5, 3, 1000, 0);
+        UUID oldest = save(owner, DownloadStatus.QUEUED, 1, 0, 1000, 0);
+        save(owner, DownloadStatus.QUEUED, 1, 2, 1000, 0);
+
+        queueChanged(owner);
+        queue.admitPending();
+
+        assertEquals(List.of(urgent, oldest), admitted());
+    }
+
+    @Test
+    void shortestRemainingAdmitsByPriorityThenRemainingBytes() {
+        User owner = user("srpt");
+        settings.update(owner.getId(), 1, 0, false, QueuePolicy.SHORTEST_REMAINING);
+        save(owner, DownloadStatus.QUEUED, 0, 0, 10_000, 0);
+        UUID almostDone = save(owner, DownloadStatus.QUEUED, 0, 1, 10_000, 9_900);
+        save(owner, DownloadStatus.QUEUED, 0, 2, 0, 0);
+        UUID small = save(owner, DownloadStatus.QUEUED, 0, 3, 500, 0);
+
+        queueChanged(owner);
+        queue.admitPending();
+
+        assertEquals(List.of(almostDone, small), admitted());
+    }
+
+    @Test
+    void finishedDownloadFreesASlotForTheNextQueuedOne() {
+        User owner = user("slot");
+        UUID running = save(owner, DownloadStatus.RUNNING, 0, 0, 1000, 0);
+        save(owner, DownloadStatus.RUNNING, 0, 1, 1000, 0);
+        UUID next = save(owner, DownloadStatus.QUEUED, 0, 2, 1000, 0);
+
+        queueChanged(owner);
+        queue.admitPending();
+        assertTrue(admitted().isEmpty());
+
+        downloads.findById(running).ifPresent(d -> {
+            d.setStatus(DownloadStatus.COMPLETED);
+            downloads.saveAndFlush(d);
+        });
+        queue.onStatusChanged(new DownloadStatusChangedEvent(running, owner.getId(),
+                DownloadStatus.RUNNING, DownloadStatus.COMPLETED));
+        queue.admitPending();
+
+        assertEquals(List.of(next), admitted());
+        assertEquals(0, downloads.countByOwner_IdAndStatus(owner.getId(), DownloadStatus.QUEUED));
+    }
+
+    @Test
+    void segmentBudgetLimitsAdmissions() {
+        ReflectionTestUtils.setField(queue, "maxActivePerUser", 0);
+        ReflectionTestUtils.setField(queue, "maxSegmentsPerUser", 8);
+        User owner = user("budget");
+        settings.update(owner.getId(), 4, 0, false, QueuePolicy.FIFO);
+        for (int i = 0; i < 4; i++) {
+            save(owner, DownloadStatus.QUEUED, 0, i, 1000, 0);
+        }
+
+        queueChanged(owner);
+        queue.admitPending();
+
+        assertEquals(2, admitted().size());
+    }
+
+    private List<UUID> admitted() {
+        return events.stream(DownloadStatusChangedEvent.class)
+                .filter(e -> e.previous() == DownloadStatus.QUEUED && e.status() == DownloadStatus.RUNNING)
+                .map(DownloadStatusChangedEvent::downloadId)
+                .toList();
+    }
+
+    private void queueChanged(User owner) {
+        queue.onStatusChanged(new DownloadStatusChangedEvent(UUID.randomUUID(), owner.getId(),
+                null, DownloadStatus.QUEUED));
+    }
+
+    private User user(String name) {
+        var u = new User();
+        u.setUsername(name);
+        u.setPasswordHash("x");
+        return users.save(u);
+    }
+
+    private UUID save(User owner, DownloadStatus status, int priority, int ageRank, long totalBytes, long receivedBytes) {
+        var d = new Download();
+        d.setId(UUID.randomUUID());
+        d.setUrl("http://example.test/" + d.getId());
+        d.setOwner(owner);
+        d.setStatus(status);
+        d.setPriority(priority);
+        d.setTotalBytes(totalBytes);
+        d.setReceivedBytes(receivedBytes);
+        d.setCreatedAt(T0.plusSeconds(ageRank));
+        return downloads.saveAndFlush(d).getId();
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.dlm.service;
+
+import org.example.dlm.support.LoopbackRangeServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpRangeClientTests {
+
+    private LoopbackRangeServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new LoopbackRangeServer().start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void cachedProbeIsReusedWithinTheTtl() throws Exception {
+        var http = new HttpRangeClient(60_000, 16, 60_000);
+        URI uri = URI.create(server.url("a.bin", 4096));
+
+        HttpRangeClient.ProbeResult first = http.probe(uri);
+        long requests = server.requests();
+        HttpRangeClient.ProbeResult second = http.probe(uri);
+
+        assertTrue(first.rangeSupported);
+        assertEquals(4096, first.contentLength);
+        assertEquals(first, second);
+        assertEquals(requests, server.requests());
+    }
+
+    @Test
+    void probeCacheIsCappedAndDropsTheOldestEntry() throws Exception {
+        var http = new HttpRangeClient(60_000, 2, 60_000);
+        URI a = URI.create(server.url("a.bin", 1024));
+        URI b = URI.create(server.url("b.bin", 2048));
+        URI c = URI.create(server.url("c.bin", 3072));
+
+        http.probe(a);
+        Thread.sleep(5);
+        http.probe(b);
+        Thread.sleep(5);
+        http.probe(c);
+        assertEquals(2, http.cachedProbes());
+
+        long requests = server.requests();
+        http.probe(c);
+        http.probe(b);
+        assertEquals(requests, server.requests());
+
+        assertEquals(1024, http.probe(a).contentLength);
+        assertEquals(requests + 1, server.requests());
+        assertEquals(2, http.cachedProbes());
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.dlm.service;
+
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntegrityVerifierTests {
+
+    private static final int SIZE = 3_000_000;
+
+    @TempDir
+    Path dir;
+
+    private final IntegrityVerifier verifier = new IntegrityVerifier(true);
+    private byte[] data;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        data = new byte[SIZE];
+        new Random(7).nextBytes(data);
+        file = dir.resolve("f.bin");
+        Files.write(file, data);
+    }
+
+    @Test
+    void matchingSha256IsAccepted() throws Exception {
+        var d = download(sha256(data, 0, SIZE));
+        var segs = List.of(segment(1, 0, 999_999), segment(2, 1_000_000, SIZE - 1));
+
+        assertTrue(verifier.needsReadPass(d, segs));
+        assertEquals(IntegrityVerifier.Outcome.OK, verifier.verify(d, segs, file).outcome());
+    }
+
+    @Test
+    void singleSegmentDigestStandsInForTheWholeFile() throws Exception {
+        var d = download(sha256(data, 0, SIZE));
+        var segs = List.of(segment(1, 0, SIZE - 1));
+
+        assertFalse(verifier.needsReadPass(d, segs));
+        assertEquals(IntegrityVerifier.Outcome.OK, verifier.verify(d, segs, file).outcome());
+    }
+
+    @Test
+    void mismatchingSha256IsRejected() throws Exception {
+        var d = download("0".repeat(64));
+        var segs = List.of(segment(1, 0, 999_999), segment(2, 1_000_000, SIZE - 1));
+
+        var result = verifier.verify(d, segs, file);
+        assertEquals(IntegrityVerifier.Outcome.MISMATCH, result.outcome());
+        assertTrue(result.segmentIds().isEmpty());
+    }
+
+    @Test
+    void segmentThatDiffersOnDiskIsRefetched() throws Exception {
+        var d = download(sha256(data, 0, SIZE));
+        var segs = List.of(segment(1, 0, 999_999), segment(2, 1_000_000, SIZE - 1));
+        data[1_500_000] ^= 1;
+        Files.write(file, data);
+
+        var result = verifier.verify(d, segs, file);
+        assertEquals(IntegrityVerifier.Outcome.REFETCH, result.outcome());
+        assertEquals(List.of(2L), result.segmentIds());
+    }
+
+    @Test
+    void shortFileIsRejected() throws Exception {
+        var d = download(sha256(data, 0, SIZE));
+        var segs = List.of(segment(1, 0, SIZE - 1));
+        Files.write(file, Arrays.copyOf(data, SIZE - 10));
+
+        var result = verifier.verify(d, segs, file);
+        assertEquals(IntegrityVerifier.Outcome.MISMATCH, result.outcome());
+        assertTrue(result.detail().contains("expected " + SIZE));
+    }
+
+    @Test
+    void shortSegmentsAreRefetched() throws Exception {
+        var d = download(sha256(data, 0, SIZE));
+        Segment partial = segment(2, 1_000_000, SIZE - 1);
+        partial.setReceivedBytes(10);
+        var segs = List.of(segment(1, 0, 999_999), partial);
+
+        var result = verifier.verify(d, segs, file);
+        assertEquals(IntegrityVerifier.Outcome.REFETCH, result.outcome());
+        assertEquals(List.of(2L), result.segmentIds());
+    }
+
+    @Test
+    void segmentsAreHashedOnlyWhenADigestIsExpected() {
+        assertTrue(verifier.hashesSegments(download("0".repeat(64))));
+        assertFalse(verifier.hashesSegments(download(null)));
+        assertFalse(new IntegrityVerifier(false).hashesSegments(download("0".repeat(64))));
+    }
+
+    @Test
+    void digestHeadersAndUserInputAreNormalized() {
+        String hex = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+        assertEquals(hex, IntegrityVerifier.sha256FromDigestHeader("SHA-256=:ungWv48Bz+pBQUDeXa4iI7ADYaOWF3qctBD/YfIAFa0=:"));
+        assertNull(IntegrityVerifier.sha256FromDigestHeader("md5=abc"));
+        assertEquals(hex, IntegrityVerifier.normalizeSha256(" " + hex.toUpperCase() + " "));
+        assertNull(IntegrityVerifier.normalizeSha256(""));
+        assertThrows(IllegalArgumentException.class, () -> IntegrityVerifier.normalizeSha256("abc"));
+    }
+
+    private Download download(String expectedSha256) {
+        var d = new Download();
+        d.setId(UUID.randomUUID());
+        d.setTotalBytes(SIZE);
+        d.setExpectedSha256(expectedSha256);
+        return d;
+    }
+
+    private Segment segment(long id, long start, long end) throws Exception {
+        var s = new Segment();
+        s.setId(id);
+        s.setStartByte(start);
+        s.setEndByte(end);
+        s.setReceivedBytes(end - start + 1);
+        s.setStatus(SegmentStatus.DONE);
+        s.setSha256(sha256(data, (int) start, (int) (end - start + 1)));
+        return s;
+    }
+
+    private static String sha256(byte[] data, int offset, int length) throws Exception {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        sha.update(data, offset, length);
+        return HexFormat.of().formatHex(sha.digest());
+    }
+}
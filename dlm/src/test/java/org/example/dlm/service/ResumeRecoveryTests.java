@@ -0,0 +1,79 @@
+package org.example.dlm.service;
+
+import org.example.dlm.domain.Segment;
+import org.example.dlm.service.io.ResumeJournal;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResumeRecoveryTests {
+
+    private static final long START = 1_000;
+    private static final long END = 1_999;
+
+    @Test
+    void withoutJournalTheDatabaseOffsetIsKeptWhenTheFileCoversIt() {
+        assertEquals(400, ResumeRecovery.durableOffset(segment(START, END, 400), null, 10_000));
+    }
+
+    @Test
+    void journalOffsetWinsOverTheDatabase() {
+        var journal = Map.of(7L, new ResumeJournal.Entry(7, START, END, 250));
+
+        assertEquals(250, ResumeRecovery.durableOffset(segment(START, END, 400), journal, 10_000));
+    }
+
+    @Test
+    void journalCannotRestoreAnOffsetResetForRefetch() {
+        var journal = Map.of(7L, new ResumeJournal.Entry(7, START, END, 900));
+
+        assertEquals(0, ResumeRecovery.durableOffset(segment(START, END, 0), journal, 10_000));
+        assertEquals(300, ResumeRecovery.durableOffset(segment(START, END, 300), journal, 10_000));
+    }
+
+    @Test
+    void segmentMissingFromTheJournalRestartsFromZero() {
+        var journal = Map.of(8L, new ResumeJournal.Entry(8, START, END, 250));
+
+        assertEquals(0, ResumeRecovery.durableOffset(segment(START, END, 400), journal, 10_000));
+    }
+
+    @Test
+    void journalEntryForAnotherStartIsIgnored() {
+        var journal = Map.of(7L, new ResumeJournal.Entry(7, START + 500, END, 250));
+
+        assertEquals(0, ResumeRecovery.durableOffset(segment(START, END, 400), journal, 10_000));
+    }
+
+    @Test
+    void offsetIsClampedToTheFileLength() {
+        var journal = Map.of(7L, new ResumeJournal.Entry(7, START, END, 900));
+
+        assertEquals(300, ResumeRecovery.durableOffset(segment(START, END, 900), journal, START + 300));
+        assertEquals(0, ResumeRecovery.durableOffset(segment(START, END, 900), null, START - 10));
+    }
+
+    @Test
+    void offsetIsClampedToTheSegmentLength() {
+        var journal = Map.of(7L, new ResumeJournal.Entry(7, START, END, 5_000));
+
+        assertEquals(1_000, ResumeRecovery.durableOffset(segment(START, END, 5_000), journal, 100_000));
+    }
+
+    @Test
+    void unboundedSegmentIsOnlyLimitedByTheFile() {
+        assertEquals(7_000, ResumeRecovery.durableOffset(segment(0, -1, 7_000), null, 10_000));
+        assertEquals(6_000, ResumeRecovery.durableOffset(segment(0, -1, 7_000), null, 6_000));
+    }
+
+    private static Segment segment(long start, long end, long received) {
+        var s = new Segment();
+        s.setId(7L);
+        s.setStartByte(start);
+        s.setEndByte(end);
+        s.setReceivedBytes(received);
+        return s;
+    }
+}
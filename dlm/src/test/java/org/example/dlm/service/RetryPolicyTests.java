@@ -0,0 +1,93 @@
+package org.example.dlm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTests {
+
+    private static final String HOST = "files.example.test";
+
+    private RetryPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        policy = new RetryPolicy();
+        ReflectionTestUtils.setField(policy, "maxAttempts", 5);
+        ReflectionTestUtils.setField(policy, "baseDelayMs", 100L);
+        ReflectionTestUtils.setField(policy, "maxDelayMs", 1000L);
+        ReflectionTestUtils.setField(policy, "breakerThreshold", 3);
+        ReflectionTestUtils.setField(policy, "breakerOpenMs", 60_000L);
+    }
+
+    @Test
+    void timeoutsThrottlingAndServerErrorsAreRetryable() {
+        for (int code : new int[]{408, 429, 500, 502, 503, 504}) {
+            assertTrue(SegmentFetchException.forStatus(code, "bytes=0-", 0).isRetryable(), "HTTP " + code);
+        }
+        for (int code : new int[]{400, 401, 403, 404, 410, 416}) {
+            assertFalse(SegmentFetchException.forStatus(code, "bytes=0-", 0).isRetryable(), "HTTP " + code);
+        }
+    }
+
+    @Test
+    void ioErrorsAreRetryableButProgrammingErrorsAreNot() {
+        assertTrue(policy.isRetryable(new IOException("connection reset")));
+        assertTrue(policy.isRetryable(new HttpTimeoutException("request timed out")));
+        assertTrue(policy.isRetryable(SegmentFetchException.forStatus(503, null, 0)));
+        assertFalse(policy.isRetryable(SegmentFetchException.forStatus(404, null, 0)));
+        assertFalse(policy.isRetryable(new IllegalStateException()));
+    }
+
+    @Test
+    void backoffStaysWithinTheJitteredExponentialCeiling() {
+        for (int i = 0; i < 200; i++) {
+            assertWithin(policy.delayMs(HOST, 1, null), 50, 100);
+            assertWithin(policy.delayMs(HOST, 3, null), 200, 400);
+            assertWithin(policy.delayMs(HOST, 40, null), 500, 1000);
+        }
+    }
+
+    @Test
+    void retryAfterRaisesTheDelayUpToTheMaximum() {
+        assertWithin(policy.delayMs(HOST, 1, SegmentFetchException.forStatus(429, null, 800)), 800, 800);
+        assertWithin(policy.delayMs(HOST, 1, SegmentFetchException.forStatus(503, null, 60_000)), 1000, 1000);
+        assertWithin(policy.delayMs(HOST, 3, SegmentFetchException.forStatus(503, null, 10)), 200, 400);
+    }
+
+    @Test
+    void breakerOpensAfterConsecutiveFailuresAndClosesOnSuccess() throws Exception {
+        policy.onFailure(HOST);
+        policy.onFailure(HOST);
+        assertWithin(policy.delayMs(HOST, 1, null), 50, 100);
+        assertTrue(policy.awaitHost(HOST, () -> true));
+
+        policy.onFailure(HOST.toUpperCase());
+        assertWithin(policy.delayMs(HOST, 1, null), 55_000, 60_000);
+        assertFalse(policy.awaitHost(HOST, () -> false));
+        assertWithin(policy.delayMs("other.example.test", 1, null), 50, 100);
+
+        policy.onSuccess(HOST);
+        assertWithin(policy.delayMs(HOST, 1, null), 50, 100);
+        assertTrue(policy.awaitHost(HOST, () -> true));
+    }
+
+    @Test
+    void zeroThresholdDisablesTheBreaker() {
+        ReflectionTestUtils.setField(policy, "breakerThreshold", 0);
+        for (int i = 0; i < 10; i++) {
+            policy.onFailure(HOST);
+        }
+        assertWithin(policy.delayMs(HOST, 1, null), 50, 100);
+    }
+
+    private static void assertWithin(long actual, long min, long max) {
+        assertTrue(actual >= min && actual <= max, actual + " not in [" + min + ", " + max + "]");
+    }
+}
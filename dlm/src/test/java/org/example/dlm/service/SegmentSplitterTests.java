@@ -0,0 +1,162 @@
+package org.example.dlm.service;
+
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+import org.example.dlm.domain.User;
+import org.example.dlm.repo.DownloadRepo;
+import org.example.dlm.repo.SegmentRepo;
+import org.example.dlm.repo.UserRepo;
+import org.example.dlm.service.io.FileChannelRegistry;
+import org.example.dlm.service.progress.ProgressCheckpointer;
+import org.example.dlm.service.progress.SegmentProgress;
+import org.example.dlm.service.progress.SegmentProgressLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(showSql = false, properties = "dlm.segments.min-split-bytes=100")
+@Import({SegmentSplitter.class, DownloadService.class, SegmentProgressLedger.class, ProgressCheckpointer.class,
+        FileChannelRegistry.class, ActiveTaskRegistry.class, BandwidthLimiter.class})
+class SegmentSplitterTests {
+
+    private static final int CHUNK = 16;
+
+    @Autowired
+    private SegmentSplitter splitter;
+    @Autowired
+    private SegmentProgressLedger ledger;
+    @Autowired
+    private DownloadRepo downloads;
+    @Autowired
+    private SegmentRepo segments;
+    @Autowired
+    private UserRepo users;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Download download;
+
+    @BeforeEach
+    void setUp() {
+        var u = new User();
+        u.setUsername("splitter");
+        u.setPasswordHash("x");
+        var d = new Download();
+        d.setId(UUID.randomUUID());
+        d.setUrl("http://example.test/" + d.getId());
+        d.setOwner(users.save(u));
+        d.setStatus(DownloadStatus.RUNNING);
+        d.setTotalBytes(1000);
+        d.setCreatedAt(Instant.now());
+        download = downloads.saveAndFlush(d);
+    }
+
+    @Test
+    void splitShrinksTheVictimAndPersistsTheTail() {
+        Segment s = segment(0, 0, 999, 100);
+        SegmentProgress victim = ledger.track(s.getId(), download.getId(), 0, 999, 100);
+
+        Segment tail = splitter.splitLargest(download.getId());
+
+        assertNotNull(tail);
+        assertEquals(550, tail.getStartByte());
+        assertEquals(999, tail.getEndByte());
+        assertEquals(1, tail.getIdx());
+        assertEquals(SegmentStatus.PENDING, tail.getStatus());
+        assertEquals(549, victim.getEndByte());
+        assertEquals(549, endInDatabase(s.getId()));
+    }
+
+    @Test
+    void failedSaveRestoresTheVictimEnd() {
+        Segment s = segment(0, 0, 999, 100);
+        SegmentProgress victim = ledger.track(s.getId(), download.getId(), 0, 999, 100);
+        jdbc.update("update segments set end_byte = 899 where id = ?", s.getId());
+
+        assertNull(splitter.splitLargest(download.getId()));
+
+        assertEquals(999, victim.getEndByte());
+        assertEquals(1, segments.findByDownload_Id(download.getId()).size());
+    }
+
+    @Test
+    void smallRemainderIsNotSplit() {
+        Segment s = segment(0, 0, 999, 850);
+        SegmentProgress victim = ledger.track(s.getId(), download.getId(), 0, 999, 850);
+
+        assertNull(splitter.splitLargest(download.getId()));
+        assertEquals(999, victim.getEndByte());
+    }
+
+    @Test
+    void runningWriterStopsAtTheNewEnd() throws Exception {
+        Segment s = segment(0, 0, 999, 0);
+        SegmentProgress victim = ledger.track(s.getId(), download.getId(), 0, 999, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch split = new CountDownLatch(1);
+
+        CompletableFuture<Long> writer = CompletableFuture.supplyAsync(() -> {
+            long position = 0;
+            while (true) {
+                long allowed = victim.writableFrom(position, CHUNK);
+                if (allowed <= 0) {
+                    return position;
+                }
+                position += allowed;
+                ledger.update(victim, position);
+                if (position == 10 * CHUNK) {
+                    started.countDown();
+                    await(split);
+                }
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Segment tail = splitter.splitLargest(download.getId());
+        split.countDown();
+
+        assertNotNull(tail);
+        assertEquals(tail.getStartByte(), writer.get(5, TimeUnit.SECONDS));
+        assertEquals(tail.getStartByte(), victim.getReceivedBytes());
+        assertEquals(tail.getStartByte() - 1, endInDatabase(s.getId()));
+    }
+
+    private Segment segment(int idx, long start, long end, long received) {
+        var s = new Segment();
+        s.setDownload(download);
+        s.setIdx(idx);
+        s.setStartByte(start);
+        s.setEndByte(end);
+        s.setReceivedBytes(received);
+        s.setStatus(SegmentStatus.RUNNING);
+        return segments.saveAndFlush(s);
+    }
+
+    private long endInDatabase(Long segmentId) {
+        return jdbc.queryForObject("select end_byte from segments where id = ?", Long.class, segmentId);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.dlm.service.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileChannelRegistryTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void forceCoversLiveMappedWindows() throws Exception {
+        var registry = new FileChannelRegistry("trunc", 1 << 20);
+        UUID id = UUID.randomUUID();
+        Path file = dir.resolve("mapped.bin");
+        registry.allocate(id, file, 16);
+
+        try (SegmentWriter first = registry.openWriter(id, file, 0, 7, 16);
+             SegmentWriter second = registry.openWriter(id, file, 8, 15, 16)) {
+            assertInstanceOf(MappedSegmentWriter.class, first);
+            assertEquals(2, registry.windows(id).size());
+
+            first.write(ascii("abcdefgh"), 0);
+            second.write(ascii("ijklmnop"), 8);
+            registry.force(id, file);
+            assertEquals("abcdefghijklmnop", Files.readString(file, StandardCharsets.US_ASCII));
+
+            first.close();
+            assertEquals(1, registry.windows(id).size());
+        }
+        assertTrue(registry.windows(id).isEmpty());
+    }
+
+    @Test
+    void channelWriterIsUsedWhenMmapIsOff() throws Exception {
+        var registry = new FileChannelRegistry("trunc", 0);
+        UUID id = UUID.randomUUID();
+        Path file = dir.resolve("plain.bin");
+        registry.allocate(id, file, 8);
+
+        try (SegmentWriter writer = registry.openWriter(id, file, 0, 7, 8)) {
+            assertFalse(writer instanceof MappedSegmentWriter);
+            writer.write(ascii("12345678"), 0);
+            registry.force(id, file);
+            assertTrue(registry.windows(id).isEmpty());
+        }
+        assertEquals("12345678", Files.readString(file, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void reopeningAChannelClosedByAnInterruptKeepsEarlierHolders() throws Exception {
+        var registry = new FileChannelRegistry("trunc", 0);
+        UUID id = UUID.randomUUID();
+        Path file = dir.resolve("shared.bin");
+        FileChannel first = registry.acquire(id, file);
+        registry.acquire(id, file);
+
+        Thread.currentThread().interrupt();
+        assertThrows(ClosedByInterruptException.class, () -> first.write(ascii("x"), 0));
+        assertTrue(Thread.interrupted());
+        assertFalse(first.isOpen());
+
+        FileChannel reopened = registry.acquire(id, file);
+        assertTrue(reopened.isOpen());
+
+        registry.release(id);
+        registry.release(id);
+        assertTrue(reopened.isOpen());
+        registry.release(id);
+        assertFalse(reopened.isOpen());
+    }
+
+    private static ByteBuffer ascii(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.dlm.service.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResumeJournalTests {
+
+    private static final int HEADER = 8;
+    private static final int RECORD = 36;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readReturnsTheLatestEntryOfEverySegment() throws Exception {
+        Path path = ResumeJournal.pathFor(dir.resolve("f.bin"));
+        try (var journal = ResumeJournal.open(path)) {
+            journal.append(List.of(entry(1, 100), entry(2, 50)));
+            journal.append(List.of(entry(1, 300)));
+        }
+
+        Map<Long, ResumeJournal.Entry> read = ResumeJournal.read(path);
+        assertEquals(Map.of(1L, entry(1, 300), 2L, entry(2, 50)), read);
+        assertEquals(dir.resolve("f.bin.dlmj"), path);
+    }
+
+    @Test
+    void reopenedJournalKeepsEarlierRecords() throws Exception {
+        Path path = dir.resolve("f.bin.dlmj");
+        try (var journal = ResumeJournal.open(path)) {
+            journal.append(List.of(entry(1, 100)));
+        }
+        try (var journal = ResumeJournal.open(path)) {
+            journal.append(List.of(entry(2, 200)));
+        }
+
+        assertEquals(Map.of(1L, entry(1, 100), 2L, entry(2, 200)), ResumeJournal.read(path));
+    }
+
+    @Test
+    void tornTailRecordIsIgnoredAndTruncatedOnOpen() throws Exception {
+        Path path = dir.resolve("f.bin.dlmj");
+        try (var journal = ResumeJournal.open(path)) {
+            journal.append(List.of(entry(1, 100)));
+            journal.append(List.of(entry(1, 200)));
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.truncate(HEADER + RECORD + 20);
+        }
+
+        assertEquals(Map.of(1L, entry(1, 100)), ResumeJournal.read(path));
+
+        try (var journal = ResumeJournal.open(path)) {
+            assertEquals(HEADER + RECORD, Files.size(path));
+            journal.append(List.of(entry(1, 150)));
+        }
+        assertEquals(Map.of(1L, entry(1, 150)), ResumeJournal.read(path));
+    }
+
+    @Test
+    void recordWithABadChecksumEndsTheJournal() throws Exception {
+        Path path = dir.resolve("f.bin.dlmj");
+        try (var journal = ResumeJournal.open(path)) {
+            journal.append(List.of(entry(1, 100)));
+            journal.append(List.of(entry(2, 200)));
+            journal.append(List.of(entry(3, 300)));
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = HEADER + RECORD + 3 * Long.BYTES + 7;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, offset);
+            ch.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 0x40)}), offset);
+        }
+
+        assertEquals(Map.of(1L, entry(1, 100)), ResumeJournal.read(path));
+    }
+
+    @Test
+    void foreignFileIsReadAsEmptyAndReplacedOnOpen() throws Exception {
+        Path path = dir.resolve("f.bin.dlmj");
+        Files.write(path, "not a journal at all".getBytes());
+
+        assertTrue(ResumeJournal.read(path).isEmpty());
+
+        try (var journal = ResumeJournal.open(path)) {
+            journal.append(List.of(entry(4, 40)));
+        }
+        assertEquals(Map.of(4L, entry(4, 40)), ResumeJournal.read(path));
+    }
+
+    @Test
+    void largeJournalIsCompactedToOneRecordPerSegment() throws Exception {
+        Path path = dir.resolve("f.bin.dlmj");
+        try (var journal = ResumeJournal.open(path)) {
+            for (int i = 1; i <= 3000; i++) {
+                journal.append(List.of(entry(1, i), entry(2, 2L * i)));
+            }
+        }
+
+        assertTrue(Files.size(path) < 64 * 1024, "journal was not compacted: " + Files.size(path));
+        assertEquals(Map.of(1L, entry(1, 3000), 2L, entry(2, 6000)), ResumeJournal.read(path));
+    }
+
+    private static ResumeJournal.Entry entry(long segmentId, long receivedBytes) {
+        return new ResumeJournal.Entry(segmentId, segmentId * 1_000_000, segmentId * 1_000_000 + 999_999, receivedBytes);
+    }
+}
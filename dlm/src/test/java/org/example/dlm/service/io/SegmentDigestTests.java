@@ -0,0 +1,75 @@
+package org.example.dlm.service.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SegmentDigestTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamedBytesHashLikeMessageDigest() throws Exception {
+        byte[] data = random(100_000);
+        SegmentDigest digest = SegmentDigest.sha256();
+        digest.update(ByteBuffer.wrap(data, 0, 40_000));
+        digest.update(ByteBuffer.wrap(data, 40_000, 60_000));
+
+        assertEquals(100_000, digest.hashedBytes());
+        assertEquals(sha256(data, 0, data.length), digest.hex());
+    }
+
+    @Test
+    void resumedSegmentIsReseededFromThePrefixOnDisk() throws Exception {
+        byte[] data = random(1_000_000);
+        Path file = dir.resolve("f.bin");
+        Files.write(file, data);
+        long segmentStart = 300_000;
+        long resumeAt = segmentStart + 450_000;
+        long segmentEnd = 899_999;
+
+        var registry = new FileChannelRegistry("trunc", 0);
+        SegmentDigest digest = SegmentDigest.sha256();
+        registry.digest(UUID.randomUUID(), file, segmentStart, resumeAt - segmentStart, digest);
+        digest.update(ByteBuffer.wrap(data, (int) resumeAt, (int) (segmentEnd - resumeAt + 1)));
+
+        assertEquals(segmentEnd - segmentStart + 1, digest.hashedBytes());
+        assertEquals(sha256(data, (int) segmentStart, (int) (segmentEnd - segmentStart + 1)), digest.hex());
+    }
+
+    @Test
+    void prefixPastEndOfFileFails() throws Exception {
+        Path file = dir.resolve("short.bin");
+        Files.write(file, random(1000));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThrows(IOException.class, () -> SegmentDigest.sha256().update(channel, 500, 1000));
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static String sha256(byte[] data, int offset, int length) throws Exception {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        sha.update(data, offset, length);
+        return HexFormat.of().formatHex(sha.digest());
+    }
+}
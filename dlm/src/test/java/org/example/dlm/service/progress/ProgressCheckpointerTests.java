@@ -0,0 +1,53 @@
+package org.example.dlm.service.progress;
+
+import org.example.dlm.service.io.FileChannelRegistry;
+import org.example.dlm.service.io.ResumeJournal;
+import org.example.dlm.service.io.SegmentWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ProgressCheckpointerTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mappedWritesAreJournaledWithTheirOffsets() throws Exception {
+        var ledger = new SegmentProgressLedger();
+        var fileChannels = new FileChannelRegistry("trunc", 1 << 20);
+        var checkpointer = new ProgressCheckpointer(ledger, fileChannels, true);
+        UUID id = UUID.randomUUID();
+        Path file = dir.resolve("mapped.bin");
+        fileChannels.allocate(id, file, 2048);
+        checkpointer.attach(id, file);
+
+        byte[] body = new byte[1024];
+        Arrays.fill(body, (byte) 7);
+        SegmentProgress progress = ledger.track(1L, id, 0, 2047, 0);
+        try (SegmentWriter writer = fileChannels.openWriter(id, file, 0, 2047, 2048)) {
+            writer.write(ByteBuffer.wrap(body), 0);
+            ledger.update(progress, body.length);
+
+            checkpointer.checkpoint(id);
+
+            assertEquals(Map.of(1L, new ResumeJournal.Entry(1L, 0, 2047, 1024)),
+                    ResumeJournal.read(ResumeJournal.pathFor(file)));
+            assertArrayEquals(body, Arrays.copyOf(Files.readAllBytes(file), body.length));
+        }
+
+        ledger.forget(1L);
+        checkpointer.discard(id, file);
+        assertFalse(Files.exists(ResumeJournal.pathFor(file)));
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.dlm.service.progress;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.dlm.domain.Download;
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.domain.Segment;
+import org.example.dlm.domain.SegmentStatus;
+import org.example.dlm.domain.User;
+import org.example.dlm.repo.DownloadRepo;
+import org.example.dlm.repo.SegmentRepo;
+import org.example.dlm.repo.UserRepo;
+import org.example.dlm.service.metrics.EngineMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// flushes commit on their own threads, so the test must not hold its data in an open transaction
+@DataJpaTest(showSql = false)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProgressFlusherTests {
+
+    private static final int SEGMENTS = 4;
+    private static final long SEGMENT_BYTES = 64 * 1024;
+    private static final int CHUNK = 1024;
+
+    @Autowired
+    private DownloadRepo downloads;
+    @Autowired
+    private SegmentRepo segments;
+    @Autowired
+    private UserRepo users;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SegmentProgressLedger ledger;
+    private ProgressFlusher flusher;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new SegmentProgressLedger();
+        flusher = new ProgressFlusher(ledger, jdbc, transactionManager, new EngineMetrics(new SimpleMeterRegistry()));
+        var u = new User();
+        u.setUsername("flusher-" + UUID.randomUUID());
+        u.setPasswordHash("x");
+        owner = users.save(u);
+    }
+
+    @Test
+    void concurrentFlushesLeaveTheDatabaseEqualToTheLedger() throws Exception {
+        List<UUID> ids = List.of(download(), download(), download());
+        List<SegmentProgress> tracked = new ArrayList<>();
+        for (UUID id : ids) {
+            for (Segment s : segments.findByDownload_Id(id)) {
+                tracked.add(ledger.track(s.getId(), id, s.getStartByte(), s.getEndByte(), 0));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(tracked.size() + 3);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (SegmentProgress p : tracked) {
+                writers.add(pool.submit(() -> {
+                    go.await();
+                    for (long written = CHUNK; written <= SEGMENT_BYTES; written += CHUNK) {
+                        ledger.update(p, written);
+                        if (written % (8 * CHUNK) == 0) {
+                            flusher.flushDownload(p.getDownloadId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> flushers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                UUID target = ids.get(i);
+                flushers.add(pool.submit(() -> {
+                    go.await();
+                    while (writing.get()) {
+                        flusher.flush();
+                        flusher.flushDownload(target);
+                    }
+                    return null;
+                }));
+            }
+
+            go.countDown();
+            for (Future<?> f : writers) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> f : flushers) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        flusher.flush();
+
+        for (SegmentProgress p : tracked) {
+            assertEquals(p.getReceivedBytes(), segmentReceived(p.getSegmentId()), "segment " + p.getSegmentId());
+            assertEquals(SEGMENT_BYTES, p.getReceivedBytes());
+        }
+        for (UUID id : ids) {
+            long fromLedger = ledger.active(id).stream().mapToLong(SegmentProgress::getReceivedBytes).sum();
+            assertEquals(fromLedger, downloadReceived(id));
+            assertEquals(ledger.writtenFor(id), downloadReceived(id));
+        }
+    }
+
+    @Test
+    void flushDownloadWritesOnlyThatDownload() {
+        UUID first = download();
+        UUID second = download();
+        Segment a = segments.findByDownload_Id(first).get(0);
+        Segment b = segments.findByDownload_Id(second).get(0);
+        SegmentProgress pa = ledger.track(a.getId(), first, a.getStartByte(), a.getEndByte(), 0);
+        SegmentProgress pb = ledger.track(b.getId(), second, b.getStartByte(), b.getEndByte(), 0);
+        ledger.update(pa, 500);
+        ledger.update(pb, 700);
+
+        flusher.flushDownload(first);
+        assertEquals(500, segmentReceived(a.getId()));
+        assertEquals(500, downloadReceived(first));
+        assertEquals(0, segmentReceived(b.getId()));
+        assertEquals(0, downloadReceived(second));
+
+        flusher.flush();
+        assertEquals(700, segmentReceived(b.getId()));
+        assertEquals(700, downloadReceived(second));
+    }
+
+    private UUID download() {
+        var d = new Download();
+        d.setId(UUID.randomUUID());
+        d.setUrl("http://example.test/" + d.getId());
+        d.setOwner(owner);
+        d.setStatus(DownloadStatus.RUNNING);
+        d.setTotalBytes(SEGMENTS * SEGMENT_BYTES);
+        d.setCreatedAt(Instant.now());
+        downloads.save(d);
+
+        List<Segment> plan = new ArrayList<>();
+        for (int i = 0; i < SEGMENTS; i++) {
+            var s = new Segment();
+            s.setDownload(d);
+            s.setIdx(i);
+            s.setStartByte(i * SEGMENT_BYTES);
+            s.setEndByte((i + 1) * SEGMENT_BYTES - 1);
+            s.setStatus(SegmentStatus.RUNNING);
+            plan.add(s);
+        }
+        segments.saveAll(plan);
+        return d.getId();
+    }
+
+    private long segmentReceived(Long segmentId) {
+        return jdbc.queryForObject("select received_bytes from segments where id = ?", Long.class, segmentId);
+    }
+
+    private long downloadReceived(UUID downloadId) {
+        return jdbc.queryForObject("select received_bytes from downloads where id = ?", Long.class, downloadId);
+    }
+}
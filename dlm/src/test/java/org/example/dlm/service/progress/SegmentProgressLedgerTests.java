@@ -0,0 +1,62 @@
+package org.example.dlm.service.progress;
+
+import org.example.dlm.domain.DownloadStatus;
+import org.example.dlm.service.DownloadStatusChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentProgressLedgerTests {
+
+    private final SegmentProgressLedger ledger = new SegmentProgressLedger();
+
+    @Test
+    void writtenCountsOnlyNewBytes() {
+        UUID id = UUID.randomUUID();
+        SegmentProgress first = ledger.track(1L, id, 0, 999, 100);
+        SegmentProgress second = ledger.track(2L, id, 1000, 1999, 0);
+
+        ledger.update(first, 400);
+        ledger.update(second, 250);
+        ledger.update(first, 5000);
+
+        assertEquals(900 + 250, ledger.writtenFor(id));
+    }
+
+    @Test
+    void terminalStatusDropsTheDownloadTotal() {
+        for (DownloadStatus status : new DownloadStatus[]{
+                DownloadStatus.COMPLETED, DownloadStatus.CANCELED, DownloadStatus.ERROR}) {
+            UUID id = UUID.randomUUID();
+            ledger.update(ledger.track(1L, id, 0, 999, 0), 500);
+
+            ledger.onStatusChanged(new DownloadStatusChangedEvent(id, 1L, DownloadStatus.RUNNING, status));
+
+            assertEquals(0, ledger.writtenFor(id), status.name());
+        }
+    }
+
+    @Test
+    void pauseKeepsTheDownloadTotal() {
+        UUID id = UUID.randomUUID();
+        ledger.update(ledger.track(1L, id, 0, 999, 0), 500);
+
+        ledger.onStatusChanged(new DownloadStatusChangedEvent(id, 1L, DownloadStatus.RUNNING, DownloadStatus.PAUSED));
+
+        assertEquals(500, ledger.writtenFor(id));
+    }
+
+    @Test
+    void refetchStartsTheTotalOver() {
+        UUID id = UUID.randomUUID();
+        ledger.update(ledger.track(1L, id, 0, 999, 0), 1000);
+        ledger.forget(1L);
+
+        ledger.forgetDownload(id);
+        ledger.update(ledger.track(1L, id, 0, 999, 0), 300);
+
+        assertEquals(300, ledger.writtenFor(id));
+    }
+}
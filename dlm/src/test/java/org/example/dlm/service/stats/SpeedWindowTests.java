@@ -0,0 +1,71 @@
+package org.example.dlm.service.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpeedWindowTests {
+
+    private static final long BUCKET = SpeedWindow.BUCKET_MS;
+    private static final long T0 = 1_000_000 * BUCKET;
+
+    @Test
+    void averageCoversCompletedBucketsOfTheWindow() {
+        var window = new SpeedWindow(1000);
+        for (int k = 0; k < 10; k++) {
+            window.record(100, T0 + k * BUCKET);
+        }
+
+        SpeedState state = window.snapshot(T0 + 10 * BUCKET, 1000);
+        assertEquals(1000.0, state.getAvgSpeedBps(), 1e-9);
+        assertEquals(1000.0, state.getMaxSpeedBps(), 1e-9);
+        assertEquals(1000, state.getWindowMillis());
+    }
+
+    @Test
+    void currentBucketIsNotCountedUntilItCloses() {
+        var window = new SpeedWindow(1000);
+        window.record(100, T0);
+        window.record(100, T0 + BUCKET + 10);
+
+        assertEquals(1000.0, window.snapshot(T0 + BUCKET + 50, 1000).getAvgSpeedBps(), 1e-9);
+    }
+
+    @Test
+    void peakIsTheBusiestSpanInsideTheWindow() {
+        var window = new SpeedWindow(1000);
+        window.record(100, T0);
+        window.record(900, T0 + 5 * BUCKET);
+
+        SpeedState state = window.snapshot(T0 + 10 * BUCKET, BUCKET);
+        assertEquals(1000.0, state.getAvgSpeedBps(), 1e-9);
+        assertEquals(9000.0, state.getMaxSpeedBps(), 1e-9);
+
+        SpeedState wide = window.snapshot(T0 + 10 * BUCKET, 2 * BUCKET);
+        assertEquals(4500.0, wide.getMaxSpeedBps(), 1e-9);
+    }
+
+    @Test
+    void reusedBucketDropsTheBytesOfItsPreviousLap() {
+        var window = new SpeedWindow(1000);
+        window.record(500, T0);
+        window.record(100, T0 + 10 * BUCKET);
+
+        SpeedState state = window.snapshot(T0 + 11 * BUCKET, 1000);
+        assertEquals(1000.0, state.getAvgSpeedBps(), 1e-9);
+        assertEquals(T0 + 10 * BUCKET, window.lastRecordedAt());
+    }
+
+    @Test
+    void idleWindowDecaysToZero() {
+        var window = new SpeedWindow(1000);
+        window.record(1000, T0);
+
+        assertEquals(5000.0, window.snapshot(T0 + 2 * BUCKET, 1000).getAvgSpeedBps(), 1e-9);
+        assertEquals(1000.0, window.snapshot(T0 + 10 * BUCKET, 1000).getAvgSpeedBps(), 1e-9);
+
+        SpeedState gone = window.snapshot(T0 + 11 * BUCKET, 1000);
+        assertEquals(0.0, gone.getAvgSpeedBps());
+        assertEquals(0.0, gone.getMaxSpeedBps());
+    }
+}
@@ -0,0 +1,206 @@
+package org.example.dlm.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoopbackRangeServer implements AutoCloseable {
+
+    private static final int CHUNK = 64 * 1024;
+
+    private long latencyMs;
+    private long bandwidthBps;
+    private int failEvery;
+    private double resetProbability;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong faults = new AtomicLong();
+    private final Map<String, Long> firstByteNanos = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public LoopbackRangeServer latency(long ms) {
+        this.latencyMs = ms;
+        return this;
+    }
+
+    public LoopbackRangeServer bandwidthPerConnection(long bytesPerSecond) {
+        this.bandwidthBps = bytesPerSecond;
+        return this;
+    }
+
+    public LoopbackRangeServer failEvery(int nthRequest) {
+        this.failEvery = nthRequest;
+        return this;
+    }
+
+    public LoopbackRangeServer resetProbability(double probability) {
+        this.resetProbability = probability;
+        return this;
+    }
+
+    public LoopbackRangeServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/files/", this::serve);
+        server.start();
+        return this;
+    }
+
+    public String url(String name, long size) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/files/" + size + "/" + name;
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long bytesServed() {
+        return bytesServed.get();
+    }
+
+    public long faults() {
+        return faults.get();
+    }
+
+    public Long firstByteNanos(String name) {
+        return firstByteNanos.get(name);
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public static byte byteAt(long offset) {
+        long x = offset * 0x9E3779B97F4A7C15L;
+        return (byte) (x >>> 56);
+    }
+
+    public static String sha256(long size) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[CHUNK];
+            for (long pos = 0; pos < size; pos += buf.length) {
+                int n = (int) Math.min(buf.length, size - pos);
+                fill(buf, pos, n);
+                md.update(buf, 0, n);
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void fill(byte[] buf, long offset, int len) {
+        for (int i = 0; i < len; i++) {
+            buf[i] = byteAt(offset + i);
+        }
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        long n = requests.incrementAndGet();
+        try (ex) {
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            long size = Long.parseLong(parts[2]);
+
+            sleep(latencyMs);
+
+            if (failEvery > 0 && n % failEvery == 0) {
+                faults.incrementAndGet();
+                ex.getResponseHeaders().add("Retry-After", "0");
+                ex.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            long start = 0;
+            long end = size - 1;
+            int code = 200;
+            String range = ex.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] r = range.substring(6).split("-", -1);
+                start = Long.parseLong(r[0]);
+                if (!r[1].isEmpty()) {
+                    end = Math.min(end, Long.parseLong(r[1]));
+                }
+                if (start > end) {
+                    ex.getResponseHeaders().add("Content-Range", "bytes */" + size);
+                    ex.sendResponseHeaders(416, -1);
+                    return;
+                }
+                code = 206;
+                ex.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+            ex.getResponseHeaders().add("Accept-Ranges", "bytes");
+            ex.getResponseHeaders().add("ETag", "\"synthetic-" + size + "\"");
+
+            long length = end - start + 1;
+            if ("HEAD".equals(ex.getRequestMethod())) {
+                ex.getResponseHeaders().add("Content-Length", Long.toString(size));
+                ex.sendResponseHeaders(code, -1);
+                return;
+            }
+            ex.sendResponseHeaders(code, length);
+
+            long resetAt = resetProbability > 0 && ThreadLocalRandom.current().nextDouble() < resetProbability
+                    ? start + ThreadLocalRandom.current().nextLong(length)
+                    : Long.MAX_VALUE;
+            firstByteNanos.putIfAbsent(parts[3], System.nanoTime());
+            stream(ex.getResponseBody(), start, end, resetAt);
+        } catch (IOException ignore) {
+            // client went away
+        }
+    }
+
+    private void stream(OutputStream out, long start, long end, long resetAt) throws IOException {
+        byte[] buf = new byte[CHUNK];
+        long startedAt = System.nanoTime();
+        long sent = 0;
+        for (long pos = start; pos <= end; ) {
+            int len = (int) Math.min(buf.length, end - pos + 1);
+            if (pos + len > resetAt) {
+                faults.incrementAndGet();
+                throw new IOException("injected reset at " + resetAt);
+            }
+            fill(buf, pos, len);
+            out.write(buf, 0, len);
+            pos += len;
+            sent += len;
+            bytesServed.addAndGet(len);
+
+            if (bandwidthBps > 0) {
+                long dueNanos = sent * 1_000_000_000L / bandwidthBps;
+                long aheadMs = (dueNanos - (System.nanoTime() - startedAt)) / 1_000_000L;
+                sleep(aheadMs);
+            }
+        }
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.dlm.web.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DownloadCursorTests {
+
+    @Test
+    void roundTripsThroughItsStringForm() {
+        var cursor = new DownloadCursor(Instant.parse("2025-03-01T10:15:30.123456789Z"), UUID.randomUUID());
+
+        assertEquals(cursor, DownloadCursor.parse(cursor.toString()));
+    }
+
+    @Test
+    void malformedInputParsesToNoCursor() {
+        String id = UUID.randomUUID().toString();
+
+        assertNull(DownloadCursor.parse(null));
+        assertNull(DownloadCursor.parse(""));
+        assertNull(DownloadCursor.parse("   "));
+        assertNull(DownloadCursor.parse("2025-03-01T10:15:30Z"));
+        assertNull(DownloadCursor.parse("_" + id));
+        assertNull(DownloadCursor.parse("yesterday_" + id));
+        assertNull(DownloadCursor.parse("2025-03-01T10:15:30Z_not-a-uuid"));
+        assertNull(DownloadCursor.parse("2025-03-01T10:15:30Z_"));
+    }
+}